@@ -1,5 +1,6 @@
 package com.bendertales.mc.chatapi;
 
+import com.bendertales.mc.chatapi.impl.ChannelIndexes;
 import com.bendertales.mc.chatapi.impl.Registry;
 import com.bendertales.mc.chatapi.command.CommandRegistries;
 import com.bendertales.mc.chatapi.impl.ChatManager;
@@ -9,7 +10,11 @@ import com.bendertales.mc.chatapi.impl.formats.MessagePlaceholderHandler;
 import com.bendertales.mc.chatapi.impl.formats.RecipientPlaceholderHandler;
 import com.bendertales.mc.chatapi.impl.formats.SenderPlaceholderHandler;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.entity.event.v1.ServerEntityWorldChangeEvents;
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -25,29 +30,44 @@ public class ChatApi implements ModInitializer {
 
 		CommandRegistries.registerCommands(chatManager);
 
-		ServerLifecycleEvents.SERVER_STARTING.register(server -> {
-			LOGGER.info("Registering format and channel handlers");
-			chatManager.setMinecraftServer(server);
-
-			Registry.FORMAT_HANDLERS.register(new MessagePlaceholderHandler());
-			Registry.FORMAT_HANDLERS.register(new SenderPlaceholderHandler());
-			Registry.FORMAT_HANDLERS.register(new RecipientPlaceholderHandler());
-			Registry.FORMAT_HANDLERS.register(new DateTimePlaceholderHandler());
-
-			Registry.CHANNEL_HANDLERS.register(new LocalChannel(chatManager));
-			Registry.CHANNEL_HANDLERS.register(new GlobalChannel());
-			Registry.CHANNEL_HANDLERS.register(new SupportChannel());
-			Registry.CHANNEL_HANDLERS.register(new StaffChannel());
-			Registry.CHANNEL_HANDLERS.register(new HelpersChannel());
-			Registry.CHANNEL_HANDLERS.register(new ModerationChannel());
-			Registry.CHANNEL_HANDLERS.register(new AdminChannel());
-		});
+		// Registered once, the integrated server being possibly started several times
+		LOGGER.info("Registering format and channel handlers");
+		Registry.FORMAT_HANDLERS.register(new MessagePlaceholderHandler());
+		Registry.FORMAT_HANDLERS.register(new SenderPlaceholderHandler());
+		Registry.FORMAT_HANDLERS.register(new RecipientPlaceholderHandler());
+		Registry.FORMAT_HANDLERS.register(new DateTimePlaceholderHandler());
+
+		Registry.CHANNEL_HANDLERS.register(new LocalChannel(chatManager));
+		Registry.CHANNEL_HANDLERS.register(new GlobalChannel());
+		Registry.CHANNEL_HANDLERS.register(new SupportChannel());
+		Registry.CHANNEL_HANDLERS.register(new StaffChannel());
+		Registry.CHANNEL_HANDLERS.register(new HelpersChannel());
+		Registry.CHANNEL_HANDLERS.register(new ModerationChannel());
+		Registry.CHANNEL_HANDLERS.register(new AdminChannel());
+
+		ServerLifecycleEvents.SERVER_STARTING.register(chatManager::setMinecraftServer);
 
 		ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+			// Handlers are registered by the mod initializers. The registries are closed for the whole game,
+			// so on a client, the worlds opened later use the handlers of the first one.
+			Registry.FORMAT_HANDLERS.freeze();
+			Registry.CHANNEL_HANDLERS.freeze();
+			// The registered channels take the first indexes, stored in a single long by the players settings
+			Registry.CHANNEL_HANDLERS.forEach(channel -> ChannelIndexes.indexOf(channel.getId()));
+
 			LOGGER.info("Loading chat configuration");
 			chatManager.load();
 		});
 
+		ServerLifecycleEvents.SERVER_STOPPING.register(server -> chatManager.shutdown());
+
+		ServerTickEvents.END_SERVER_TICK.register(server -> chatManager.onServerTick());
+
+		ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> chatManager.onPlayerJoin(handler.player));
+		ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> chatManager.onPlayerLeave(handler.player));
+		ServerEntityWorldChangeEvents.AFTER_PLAYER_CHANGE_WORLD.register(
+			(player, origin, destination) -> chatManager.onPlayerMoved(player));
+		ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> chatManager.onPlayerRespawn(oldPlayer, newPlayer));
 	}
 
 }
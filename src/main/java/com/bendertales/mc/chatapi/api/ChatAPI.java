@@ -1,5 +1,9 @@
 package com.bendertales.mc.chatapi.api;
 
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import com.bendertales.mc.chatapi.config.PlayerProperties;
 import com.bendertales.mc.chatapi.impl.ChatManager;
 import com.bendertales.mc.chatapi.impl.Registry;
 
@@ -10,11 +14,51 @@ public class ChatAPI {
 		return ChatManager.get();
 	}
 
+	/**
+	 * Registers a channel. Call it from your mod initializer ({@code ModInitializer#onInitialize}).
+	 * The registry is closed once the first server started, and stays closed for the lifetime of the game:
+	 * on a client, registering when a world is opened only works for the first one.
+	 * Later registrations, and those of an id already registered, are ignored and reported in the logs.
+	 */
 	public static void registerChannel(ModChannelImplementationsProvider channelProvider) {
 		Registry.CHANNEL_HANDLERS.register(channelProvider);
 	}
 
+	/**
+	 * Registers a placeholder. Call it from your mod initializer ({@code ModInitializer#onInitialize}).
+	 * The registry is closed once the first server started, and stays closed for the lifetime of the game:
+	 * on a client, registering when a world is opened only works for the first one.
+	 * Later registrations, and those of an id already registered, are ignored and reported in the logs.
+	 */
 	public static void registerPlaceholder(PlaceholderHandler placeholderHandler) {
 		Registry.FORMAT_HANDLERS.register(placeholderHandler);
 	}
+
+	/**
+	 * Notifies that the permissions of a player changed (e.g. from a permissions mod's events),
+	 * so that the channels the player can read are evaluated again.
+	 * It can be called from any thread, and before the server started.
+	 */
+	public static void notifyPermissionsChanged(UUID playerUuid) {
+		ChatManager.get().onPermissionsChanged(playerUuid);
+	}
+
+	/**
+	 * Stores the players settings with the given storage instead of the configured one.
+	 */
+	public static void setPlayerSettingsStorage(PlayerSettingsStorage storage) {
+		ChatManager.get().setPlayerSettingsStorage(storage);
+	}
+
+	/**
+	 * Reads the stored chat settings of a player, whether online or not.
+	 * @return the future settings, completed with null if the player has none
+	 */
+	public static CompletableFuture<PlayerProperties> loadPlayerSettings(UUID playerUuid) {
+		return ChatManager.get().loadPlayerProperties(playerUuid);
+	}
+
+	public static void deletePlayerSettings(UUID playerUuid) {
+		ChatManager.get().deletePlayerSettings(playerUuid);
+	}
 }
@@ -22,6 +22,25 @@ public interface ModChannelImplementationsProvider extends Identifiable {
 	 */
 	RecipientFilter getRecipientsFilter();
 
+	/**
+	 * Define whether a player can read this channel, whoever the sender is.
+	 * It is only evaluated when the channel's audience changes (join, reload, permissions changes...),
+	 * players rejected by it are not given to the recipients filter unless they are the sender or a social spy.
+	 * @return a predicate, or null if every player can read the channel
+	 */
+	default Predicate<ServerPlayerEntity> getReaderFilter() {
+		return null;
+	}
+
+	/**
+	 * Optionally restricts the players given to the recipients filter, for channels whose audience can be looked up
+	 * without checking every connected player.
+	 * @return a candidates provider, or null to evaluate every connected player
+	 */
+	default RecipientCandidatesProvider getRecipientCandidatesProvider() {
+		return null;
+	}
+
 	/**
 	 * Define whether the channel is enabled before being configured
 	 * @return a boolean
@@ -1,5 +1,7 @@
 package com.bendertales.mc.chatapi.api;
 
+import java.util.Map;
+
 
 public interface PlaceholderHandler extends Identifiable {
 
@@ -12,4 +14,13 @@ public interface PlaceholderHandler extends Identifiable {
 		return null;
 	}
 
+	/**
+	 * Gives the tokens handled and their values, so that formats are compiled once and rendered in a single pass.
+	 * Handlers without tokens are applied through their formatters instead.
+	 * @return the values by token, e.g. "%SENDER%"
+	 */
+	default Map<String, PlaceholderValue> getTokenValues() {
+		return Map.of();
+	}
+
 }
@@ -0,0 +1,33 @@
+package com.bendertales.mc.chatapi.api;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+
+
+/**
+ * Value of a placeholder token, inserted in a compiled format.
+ */
+@FunctionalInterface
+public interface PlaceholderValue {
+
+	/**
+	 *
+	 * @param message
+	 * @param recipient A player or null if console, always null if the value is not specific to the recipient
+	 * @return the text replacing the token
+	 */
+	String resolve(Message message, ServerPlayerEntity recipient);
+
+	/**
+	 * @return true if the value has to be resolved for each recipient
+	 */
+	default boolean isSpecificToRecipient() {
+		return false;
+	}
+
+	/**
+	 * Same as {@link SpecificToRecipientPlaceholderFormatter#getCacheKey(Message, ServerPlayerEntity)}.
+	 */
+	default Object getCacheKey(Message message, ServerPlayerEntity recipient) {
+		return null;
+	}
+}
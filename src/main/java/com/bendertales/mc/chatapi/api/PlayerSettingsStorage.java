@@ -0,0 +1,45 @@
+package com.bendertales.mc.chatapi.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.bendertales.mc.chatapi.config.PlayerProperties;
+
+
+/**
+ * Where the players settings are stored.
+ * Implementations are only called from the storage thread, so they do not need to be thread-safe.
+ */
+public interface PlayerSettingsStorage extends Closeable {
+
+	/**
+	 * @return the stored properties, or null if the player has none
+	 */
+	PlayerProperties load(UUID playerUuid) throws IOException;
+
+	/**
+	 * @return the stored properties of the players having some
+	 */
+	default Map<UUID, PlayerProperties> loadAll(Collection<UUID> playerUuids) throws IOException {
+		var propertiesByPlayer = new HashMap<UUID, PlayerProperties>();
+		for (UUID playerUuid : playerUuids) {
+			var properties = load(playerUuid);
+			if (properties != null) {
+				propertiesByPlayer.put(playerUuid, properties);
+			}
+		}
+		return propertiesByPlayer;
+	}
+
+	default void save(UUID playerUuid, PlayerProperties properties) throws IOException {
+		saveAll(Map.of(playerUuid, properties));
+	}
+
+	void saveAll(Map<UUID, PlayerProperties> propertiesByPlayer) throws IOException;
+
+	void delete(UUID playerUuid) throws IOException;
+}
@@ -0,0 +1,18 @@
+package com.bendertales.mc.chatapi.api;
+
+import java.util.Set;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+
+
+@FunctionalInterface
+public interface RecipientCandidatesProvider {
+
+	/**
+	 * Narrows the players the recipients filter will be evaluated against.
+	 * Players outside of the candidates are considered hidden unless they enabled social spy.
+	 * @param sender the player sending the message
+	 * @return the players that may see the message, the sender included
+	 */
+	Set<ServerPlayerEntity> getCandidates(ServerPlayerEntity sender);
+}
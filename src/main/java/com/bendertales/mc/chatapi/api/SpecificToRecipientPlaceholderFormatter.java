@@ -14,4 +14,16 @@ public interface SpecificToRecipientPlaceholderFormatter {
 	 */
 	String formatMessage(String currentFormatState, Message message, ServerPlayerEntity recipient);
 
+	/**
+	 * Gives the value the output of this formatter depends on, so that recipients sharing it reuse the same text
+	 * within a message.
+	 * A value unique to each recipient, such as its name, only costs a lookup: return null instead.
+	 * @param message
+	 * @param recipient A player or null if console
+	 * @return a key, or null if the output cannot be shared between recipients
+	 */
+	default Object getCacheKey(Message message, ServerPlayerEntity recipient) {
+		return null;
+	}
+
 }
@@ -0,0 +1,37 @@
+package com.bendertales.mc.chatapi.command;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.mojang.brigadier.CommandDispatcher;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+
+import static net.minecraft.server.command.CommandManager.literal;
+
+
+/**
+ * Registers the shared /chatapi node before its sub-commands.
+ * Brigadier keeps the requirement of the first registration when merging nodes,
+ * so the root accepts anyone allowed to run one of the sub-commands, each of them checking its own permissions.
+ */
+public class CmdChatApiRoot implements CommandRegistrationCallback {
+
+	private final List<Predicate<ServerCommandSource>> subCommandsRequirements;
+
+	public CmdChatApiRoot(List<ModCommand> subCommands) {
+		this.subCommandsRequirements = subCommands.stream().map(ModCommand::getRequirements).toList();
+	}
+
+	@Override
+	public void register(CommandDispatcher<ServerCommandSource> dispatcher, CommandRegistryAccess registryAccess,
+	                     CommandManager.RegistrationEnvironment environment) {
+		dispatcher.register(
+			literal("chatapi")
+				.requires(cmdSource -> subCommandsRequirements.stream()
+				                                              .anyMatch(requirement -> requirement.test(cmdSource)))
+		);
+	}
+}
@@ -0,0 +1,85 @@
+package com.bendertales.mc.chatapi.command;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import com.bendertales.mc.chatapi.impl.ChatManager;
+import com.bendertales.mc.chatapi.impl.FloodControl;
+import com.bendertales.mc.chatapi.impl.vo.RateLimit;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.DoubleArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+
+import static net.minecraft.server.command.CommandManager.argument;
+import static net.minecraft.server.command.CommandManager.literal;
+
+
+/**
+ * Shows and changes the flood control limits, until the next reload.
+ */
+public class CmdFloodControl implements ModCommand {
+
+	private final ChatManager chatManager;
+
+	public CmdFloodControl(ChatManager chatManager) {
+		this.chatManager = chatManager;
+	}
+
+	@Override
+	public void register(CommandDispatcher<ServerCommandSource> dispatcher, CommandRegistryAccess registryAccess,
+	                     CommandManager.RegistrationEnvironment environment) {
+		var floodControlCommand = literal("floodcontrol")
+			.requires(getRequirements())
+			.executes(this);
+
+		for (FloodControl.Scope scope : FloodControl.Scope.values()) {
+			floodControlCommand.then(literal(scope.name().toLowerCase(Locale.ROOT))
+				.then(literal("off")
+			        .executes(context -> setLimit(context, scope, RateLimit.DISABLED)))
+				.then(argument("messagesPerSecond", DoubleArgumentType.doubleArg(RateLimit.MIN_MESSAGES_PER_SECOND))
+			        .then(argument("burst", IntegerArgumentType.integer(1))
+		                .executes(context -> setLimit(context, scope, new RateLimit(
+			                context.getArgument("messagesPerSecond", Double.class),
+			                context.getArgument("burst", Integer.class)))))
+				)
+			);
+		}
+
+		dispatcher.register(
+			literal("chatapi")
+				.then(floodControlCommand)
+		);
+	}
+
+	@Override
+	public Collection<String> getRequiredPermissions() {
+		return List.of("chatapi.commands.admin", "chatapi.commands.floodcontrol");
+	}
+
+	@Override
+	public int run(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+		var cmdSource = context.getSource();
+		var floodControl = chatManager.getFloodControl();
+
+		for (FloodControl.Scope scope : FloodControl.Scope.values()) {
+			cmdSource.sendFeedback(Text.of("%s: %s".formatted(scope.name().toLowerCase(Locale.ROOT),
+			                                                  floodControl.getLimit(scope))), false);
+		}
+
+		return SINGLE_SUCCESS;
+	}
+
+	private int setLimit(CommandContext<ServerCommandSource> context, FloodControl.Scope scope, RateLimit limit) {
+		chatManager.getFloodControl().setLimit(scope, limit);
+		context.getSource().sendFeedback(Text.of("Flood control of %s set to %s, until the next reload".formatted(
+			scope.name().toLowerCase(Locale.ROOT), limit)), true);
+		return SINGLE_SUCCESS;
+	}
+}
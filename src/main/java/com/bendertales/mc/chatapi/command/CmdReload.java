@@ -28,8 +28,8 @@ public class CmdReload implements ModCommand {
 	                     CommandManager.RegistrationEnvironment environment) {
 		dispatcher.register(
 			literal("chatapi")
-				.requires(getRequirements())
 				.then(literal("reload")
+			        .requires(getRequirements())
 			        .executes(this))
 		);
 	}
@@ -41,8 +41,17 @@ public class CmdReload implements ModCommand {
 
 	@Override
 	public int run(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
-		chatManager.reload();
-		context.getSource().sendFeedback(Text.of("Chat-Api reloaded"), true);
+		var cmdSource = context.getSource();
+		var server = cmdSource.getServer();
+		chatManager.reload().whenCompleteAsync((result, error) -> {
+			if (error != null) {
+				var cause = error.getCause() == null ? error : error.getCause();
+				cmdSource.sendError(Text.of("Chat-Api could not be reloaded: " + cause.getMessage()));
+			}
+			else {
+				cmdSource.sendFeedback(Text.of("Chat-Api reloaded"), true);
+			}
+		}, server::execute);
 		return 0;
 	}
 
@@ -3,10 +3,12 @@ package com.bendertales.mc.chatapi.command;
 import java.util.Collection;
 import java.util.List;
 
+import com.bendertales.mc.chatapi.api.ChatException;
 import com.bendertales.mc.chatapi.impl.ChatManager;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import net.minecraft.command.CommandRegistryAccess;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
@@ -47,7 +49,14 @@ public class CmdSocialSpy implements ModCommand {
 	public int run(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
 		var cmdSource = context.getSource();
 		var player = cmdSource.getPlayerOrThrow();
-		chatManager.enableSocialSpy(player);
+
+		try {
+			chatManager.enableSocialSpy(player);
+		}
+		catch (ChatException e) {
+			var msg = Text.literal(e.getMessage()).formatted(Formatting.RED);
+			throw new CommandSyntaxException(new SimpleCommandExceptionType(msg), msg);
+		}
 		cmdSource.sendFeedback(Text.literal("Social spy enabled").formatted(Formatting.GREEN), true);
 		return 0;
 	}
@@ -0,0 +1,72 @@
+package com.bendertales.mc.chatapi.command;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.bendertales.mc.chatapi.impl.ChatManager;
+import com.bendertales.mc.chatapi.impl.FloodControl;
+import com.bendertales.mc.chatapi.impl.helper.Perms;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+
+import static net.minecraft.server.command.CommandManager.literal;
+
+
+public class CmdStats implements ModCommand {
+
+	private final ChatManager chatManager;
+
+	public CmdStats(ChatManager chatManager) {
+		this.chatManager = chatManager;
+	}
+
+	@Override
+	public void register(CommandDispatcher<ServerCommandSource> dispatcher, CommandRegistryAccess registryAccess,
+	                     CommandManager.RegistrationEnvironment environment) {
+		dispatcher.register(
+			literal("chatapi")
+				.then(literal("stats")
+			        .requires(getRequirements())
+			        .executes(this))
+		);
+	}
+
+	@Override
+	public Collection<String> getRequiredPermissions() {
+		return List.of("chatapi.commands.admin", "chatapi.commands.stats");
+	}
+
+	@Override
+	public int run(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+		var cmdSource = context.getSource();
+
+		var permissionCache = Perms.getCache();
+		cmdSource.sendFeedback(Text.of("Permission cache: %d hits, %d misses".formatted(
+			permissionCache.getHits(), permissionCache.getMisses())), false);
+		var playerSettingsManager = chatManager.getPlayerSettingsManager();
+		cmdSource.sendFeedback(Text.of("Player settings: %d resident, %d recent hits, %d misses, %d evictions".formatted(
+			playerSettingsManager.getResidentCount(), playerSettingsManager.getRecentHits(),
+			playerSettingsManager.getRecentMisses(), playerSettingsManager.getEvictions())), false);
+		var playerChannelsCache = chatManager.getPlayerChannelsCache();
+		cmdSource.sendFeedback(Text.of("Player channels cache: %d hits, %d misses".formatted(
+			playerChannelsCache.getHits(), playerChannelsCache.getMisses())), false);
+		cmdSource.sendFeedback(Text.of("Console log: %d dropped messages".formatted(
+			chatManager.getDroppedConsoleMessages())), false);
+		var floodControl = chatManager.getFloodControl();
+		cmdSource.sendFeedback(Text.of("Flood control: %d rejected by player limit, %d by channel limit, %d by server limit".formatted(
+			floodControl.getRejections(FloodControl.Scope.PLAYER), floodControl.getRejections(FloodControl.Scope.CHANNEL),
+			floodControl.getRejections(FloodControl.Scope.SERVER))), false);
+		var ioExecutor = chatManager.getIoExecutor();
+		cmdSource.sendFeedback(Text.of("I/O (%s threads): %d queued, %d completed, %d failed, wait %.2f ms avg %.2f ms max, run %.2f ms avg".formatted(
+			ioExecutor.isUsingVirtualThreads() ? "virtual" : "platform", ioExecutor.getQueued(),
+			ioExecutor.getCompleted(), ioExecutor.getFailed(), ioExecutor.getAverageWaitMillis(),
+			ioExecutor.getMaxWaitMillis(), ioExecutor.getAverageRunMillis())), false);
+
+		return SINGLE_SUCCESS;
+	}
+}
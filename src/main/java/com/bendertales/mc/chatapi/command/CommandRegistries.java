@@ -1,5 +1,6 @@
 package com.bendertales.mc.chatapi.command;
 
+import java.util.List;
 import java.util.stream.Stream;
 
 import com.bendertales.mc.chatapi.command.shortcuts.CmdChatAdmin;
@@ -19,9 +20,17 @@ public class CommandRegistries {
 	}
 
 	private static Stream<CommandRegistrationCallback> buildCommands(ChatManager chatManager) {
+		var cmdReload = new CmdReload(chatManager);
+		var cmdStats = new CmdStats(chatManager);
+		var cmdFloodControl = new CmdFloodControl(chatManager);
+
 		return Stream.of(
 			new ClearingNativeCommands(),
-			new CmdReload(chatManager),
+			// Before the /chatapi sub-commands
+			new CmdChatApiRoot(List.of(cmdReload, cmdStats, cmdFloodControl)),
+			cmdReload,
+			cmdStats,
+			cmdFloodControl,
 			new CmdList(chatManager),
 			new CmdSocialSpy(chatManager),
 			new CmdSelect(chatManager),
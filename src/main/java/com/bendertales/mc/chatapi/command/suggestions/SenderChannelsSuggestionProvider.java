@@ -25,14 +25,12 @@ public class SenderChannelsSuggestionProvider implements SuggestionProvider<Serv
 	                                                     SuggestionsBuilder builder) throws CommandSyntaxException {
 		var cmdSource = context.getSource();
 		var player = cmdSource.getPlayer();
+		if (player == null) {
+			return CommandSource.suggestMatching(chatManager.getChannels().stream().map(ch -> ch.id().toString()),
+			                                     builder);
+		}
 
-		var channels = chatManager.getChannels();
-
-		return CommandSource.suggestMatching(
-			channels.stream()
-			        .filter(ch -> ch.senderFilter().test(player))
-			        .map(ch -> ch.id().toString()),
-			builder
-		);
+		// Cached per player, as this runs on each keystroke
+		return CommandSource.suggestMatching(chatManager.getSendableChannelSuggestions(player), builder);
 	}
 }
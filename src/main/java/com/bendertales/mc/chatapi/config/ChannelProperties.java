@@ -4,6 +4,8 @@ public class ChannelProperties {
 
 	private boolean disabled;
 	private String format;
+	private String timeZone;
+	private String timePattern;
 
 	public boolean isDisabled() {
 		return disabled;
@@ -20,4 +22,20 @@ public class ChannelProperties {
 	public void setFormat(String format) {
 		this.format = format;
 	}
+
+	public String getTimeZone() {
+		return timeZone;
+	}
+
+	public void setTimeZone(String timeZone) {
+		this.timeZone = timeZone;
+	}
+
+	public String getTimePattern() {
+		return timePattern;
+	}
+
+	public void setTimePattern(String timePattern) {
+		this.timePattern = timePattern;
+	}
 }
@@ -9,6 +9,15 @@ public class ModProperties {
 
 	private Identifier        defaultChannel;
 	private int localChannelDistance;
+	private boolean asynchronousDispatch;
+	private boolean watchConfiguration;
+	private PlayerStorageType playerStorage;
+	private String playerStorageUrl;
+	private int ioThreads;
+	private boolean virtualIoThreads;
+	private RateLimitProperties playerRateLimit;
+	private RateLimitProperties channelRateLimit;
+	private RateLimitProperties serverRateLimit;
 
 	private PrivateMessageProperties privateMessages;
 
@@ -31,6 +40,78 @@ public class ModProperties {
 		this.localChannelDistance = localChannelDistance;
 	}
 
+	public boolean isAsynchronousDispatch() {
+		return asynchronousDispatch;
+	}
+
+	public void setAsynchronousDispatch(boolean asynchronousDispatch) {
+		this.asynchronousDispatch = asynchronousDispatch;
+	}
+
+	public boolean isWatchConfiguration() {
+		return watchConfiguration;
+	}
+
+	public void setWatchConfiguration(boolean watchConfiguration) {
+		this.watchConfiguration = watchConfiguration;
+	}
+
+	public PlayerStorageType getPlayerStorage() {
+		return playerStorage;
+	}
+
+	public void setPlayerStorage(PlayerStorageType playerStorage) {
+		this.playerStorage = playerStorage;
+	}
+
+	public String getPlayerStorageUrl() {
+		return playerStorageUrl;
+	}
+
+	public void setPlayerStorageUrl(String playerStorageUrl) {
+		this.playerStorageUrl = playerStorageUrl;
+	}
+
+	public int getIoThreads() {
+		return ioThreads;
+	}
+
+	public void setIoThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+
+	public boolean isVirtualIoThreads() {
+		return virtualIoThreads;
+	}
+
+	public void setVirtualIoThreads(boolean virtualIoThreads) {
+		this.virtualIoThreads = virtualIoThreads;
+	}
+
+	public RateLimitProperties getPlayerRateLimit() {
+		return playerRateLimit;
+	}
+
+	public void setPlayerRateLimit(RateLimitProperties playerRateLimit) {
+		this.playerRateLimit = playerRateLimit;
+	}
+
+	public RateLimitProperties getChannelRateLimit() {
+		return channelRateLimit;
+	}
+
+	public void setChannelRateLimit(RateLimitProperties channelRateLimit) {
+		this.channelRateLimit = channelRateLimit;
+	}
+
+	public RateLimitProperties getServerRateLimit() {
+		return serverRateLimit;
+	}
+
+	public void setServerRateLimit(RateLimitProperties serverRateLimit) {
+		this.serverRateLimit = serverRateLimit;
+	}
+
 	public PrivateMessageProperties getPrivateMessages() {
 		return privateMessages;
 	}
@@ -0,0 +1,10 @@
+package com.bendertales.mc.chatapi.config;
+
+public enum PlayerStorageType {
+	/** One JSON file per player */
+	JSON,
+	/** A single append-only record log */
+	LOG,
+	/** A SQL database, embedded unless an url is configured */
+	SQL
+}
@@ -0,0 +1,23 @@
+package com.bendertales.mc.chatapi.config;
+
+public class RateLimitProperties {
+
+	private double messagesPerSecond;
+	private int burst;
+
+	public double getMessagesPerSecond() {
+		return messagesPerSecond;
+	}
+
+	public void setMessagesPerSecond(double messagesPerSecond) {
+		this.messagesPerSecond = messagesPerSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	public void setBurst(int burst) {
+		this.burst = burst;
+	}
+}
@@ -0,0 +1,61 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Runs the formatting and the sending of the messages on a dedicated thread.
+ * Tasks are run one at a time in submission order, so the messages keep their order per sender and per channel.
+ */
+public class AsyncMessageDispatcher {
+
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	private ExecutorService executor;
+
+	public synchronized void submit(Runnable task) {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(runnable -> {
+				var thread = new Thread(runnable, "Chat-Api Dispatcher");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		executor.execute(() -> {
+			try {
+				task.run();
+			}
+			catch (RuntimeException e) {
+				LOGGER.error("Could not dispatch a chat message", e);
+			}
+		});
+	}
+
+	/**
+	 * Stops the dispatcher once the pending messages have been sent.
+	 */
+	public synchronized void shutdown() {
+		if (executor == null) {
+			return;
+		}
+
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+				LOGGER.warn("Some chat messages could not be dispatched before shutdown");
+				executor.shutdownNow();
+			}
+		}
+		catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+	}
+}
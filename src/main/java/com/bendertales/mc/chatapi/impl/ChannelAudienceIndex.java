@@ -0,0 +1,79 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+
+import com.bendertales.mc.chatapi.impl.vo.Channel;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+
+/**
+ * Keeps, for each channel, the connected players who can read it and have not hidden it.
+ * The audiences are only updated on joins, leaves, hide toggles, reloads and permissions changes,
+ * so that sending a message does not re-evaluate the whole server.
+ */
+public class ChannelAudienceIndex {
+
+	private final BiPredicate<Channel, ServerPlayerEntity> isInAudience;
+
+	private Map<Identifier, Channel>                                 channelsById       = Map.of();
+	private Map<Identifier, ReferenceOpenHashSet<ServerPlayerEntity>> audiencesByChannel = Map.of();
+
+	public ChannelAudienceIndex(BiPredicate<Channel, ServerPlayerEntity> isInAudience) {
+		this.isInAudience = isInAudience;
+	}
+
+	public void rebuild(Map<Identifier, Channel> channelsById, Collection<ServerPlayerEntity> players) {
+		var audiences = new HashMap<Identifier, ReferenceOpenHashSet<ServerPlayerEntity>>();
+		for (Channel channel : channelsById.values()) {
+			var audience = new ReferenceOpenHashSet<ServerPlayerEntity>();
+			for (ServerPlayerEntity player : players) {
+				if (isInAudience.test(channel, player)) {
+					audience.add(player);
+				}
+			}
+			audiences.put(channel.id(), audience);
+		}
+
+		this.channelsById = channelsById;
+		this.audiencesByChannel = audiences;
+	}
+
+	public void addPlayer(ServerPlayerEntity player) {
+		for (Channel channel : channelsById.values()) {
+			refresh(channel, player);
+		}
+	}
+
+	public void removePlayer(ServerPlayerEntity player) {
+		for (var audience : audiencesByChannel.values()) {
+			audience.remove(player);
+		}
+	}
+
+	public void replacePlayer(ServerPlayerEntity oldPlayer, ServerPlayerEntity newPlayer) {
+		removePlayer(oldPlayer);
+		addPlayer(newPlayer);
+	}
+
+	public void refresh(Channel channel, ServerPlayerEntity player) {
+		var audience = audiencesByChannel.get(channel.id());
+		if (audience == null) {
+			return;
+		}
+
+		if (isInAudience.test(channel, player)) {
+			audience.add(player);
+		}
+		else {
+			audience.remove(player);
+		}
+	}
+
+	public Set<ServerPlayerEntity> getAudience(Channel channel) {
+		var audience = audiencesByChannel.get(channel.id());
+		return audience == null ? Set.of() : audience;
+	}
+}
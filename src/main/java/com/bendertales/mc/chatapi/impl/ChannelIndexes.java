@@ -0,0 +1,53 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.util.Identifier;
+
+
+/**
+ * Gives each channel identifier a dense index, used to store per-player channel states as bits.
+ * Indexes are never reused nor changed while the server runs, so they stay valid across reloads.
+ * <p>
+ * This numbering is kept apart from the {@link Registry} on purpose: channels come from the configuration and
+ * a reload can add some, and the stored settings may mute channels that no handler registers anymore.
+ * Both would need an id the frozen registry cannot give.
+ */
+public final class ChannelIndexes {
+
+	private static final Map<Identifier, Integer> indexesById = new ConcurrentHashMap<>();
+
+	private static volatile Identifier[] idsByIndex = new Identifier[0];
+
+	public static int indexOf(Identifier channelId) {
+		var index = indexesById.get(channelId);
+		if (index != null) {
+			return index;
+		}
+		return allocate(channelId);
+	}
+
+	public static Identifier idOf(int index) {
+		var ids = idsByIndex;
+		return index < ids.length ? ids[index] : null;
+	}
+
+	private static synchronized int allocate(Identifier channelId) {
+		var index = indexesById.get(channelId);
+		if (index != null) {
+			return index;
+		}
+
+		var ids = Arrays.copyOf(idsByIndex, idsByIndex.length + 1);
+		index = ids.length - 1;
+		ids[index] = channelId;
+		idsByIndex = ids;
+		indexesById.put(channelId, index);
+		return index;
+	}
+
+	private ChannelIndexes() {
+	}
+}
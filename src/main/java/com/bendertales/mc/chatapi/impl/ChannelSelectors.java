@@ -0,0 +1,69 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.Collection;
+
+import com.bendertales.mc.chatapi.impl.vo.Channel;
+import it.unimi.dsi.fastutil.chars.Char2ObjectOpenHashMap;
+
+
+/**
+ * Prefix trie of the channels selectors.
+ * Resolves the channel selected by a message in a single scan of its first characters, the longest prefix wins.
+ */
+public final class ChannelSelectors {
+
+	private final Node root = new Node();
+
+	public ChannelSelectors(Collection<Channel> channels) {
+		for (Channel channel : channels) {
+			var prefix = channel.selectorPrefix();
+			if (prefix == null || prefix.isEmpty()) {
+				continue;
+			}
+
+			var node = root;
+			for (int i = 0; i < prefix.length(); i++) {
+				var c = prefix.charAt(i);
+				var next = node.children.get(c);
+				if (next == null) {
+					next = new Node();
+					node.children.put(c, next);
+				}
+				node = next;
+			}
+			node.channel = channel;
+		}
+		root.trim();
+	}
+
+	/**
+	 * @return the channel whose selector is the longest prefix of the message, excluding the whole message,
+	 * or null if none matches.
+	 */
+	public Channel match(String message) {
+		Channel match = null;
+		var node = root;
+		// A message made only of a selector is not a selection
+		var maxLength = message.length() - 1;
+		for (int i = 0; i < maxLength; i++) {
+			node = node.children.get(message.charAt(i));
+			if (node == null) {
+				break;
+			}
+			if (node.channel != null) {
+				match = node.channel;
+			}
+		}
+		return match;
+	}
+
+	private static class Node {
+		private final Char2ObjectOpenHashMap<Node> children = new Char2ObjectOpenHashMap<>();
+		private       Channel                      channel;
+
+		private void trim() {
+			children.trim();
+			children.values().forEach(Node::trim);
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Runs the blocking I/O of the mod (players settings, configuration, console), away from the server thread.
+ * <p>
+ * Tasks run on a bounded pool of daemon threads, or on a virtual thread each when enabled and supported by the JVM.
+ * Components needing their tasks to run one at a time and in order use a {@link #newLane() lane}.
+ * The threads are started on the first task. Once shut down, tasks are rejected until {@link #start()} is called.
+ */
+public class ChatIoExecutor implements Executor {
+
+	private static final Logger LOGGER              = LogManager.getLogger();
+	private static final int    DEFAULT_POOL_SIZE   = 2;
+	private static final long   KEEP_ALIVE_SECONDS  = 30;
+	private static final long   SHUTDOWN_TIMEOUT_MS = 5000;
+
+	private final LongAdder  queued       = new LongAdder();
+	private final LongAdder  completed    = new LongAdder();
+	private final LongAdder  failed       = new LongAdder();
+	private final LongAdder  waitNanos    = new LongAdder();
+	private final LongAdder  runNanos     = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	private ExecutorService executor;
+	private int             poolSize = DEFAULT_POOL_SIZE;
+	private boolean         virtualThreads;
+	private boolean         usingVirtualThreads;
+	private boolean         terminated;
+
+	/**
+	 * Accepts tasks again after a shutdown, to be called when the server starts.
+	 */
+	public synchronized void start() {
+		terminated = false;
+	}
+
+	/**
+	 * Changes the threads used by the next tasks. The tasks already submitted still run on the previous ones.
+	 * @param virtualThreads whether to use a virtual thread per task, if the JVM supports them
+	 * @param poolSize the number of platform threads otherwise
+	 */
+	public synchronized void configure(boolean virtualThreads, int poolSize) {
+		if (virtualThreads == this.virtualThreads && poolSize == this.poolSize) {
+			return;
+		}
+
+		this.virtualThreads = virtualThreads;
+		this.poolSize = Math.max(1, poolSize);
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		submit(new MeteredTask(task));
+	}
+
+	/**
+	 * Runs the supplier on an I/O thread.
+	 */
+	public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+		return CompletableFuture.supplyAsync(supplier, this);
+	}
+
+	/**
+	 * Creates an executor running its tasks one at a time, in submission order, on the I/O threads.
+	 */
+	public Executor newLane() {
+		return new Lane();
+	}
+
+	private void submit(Runnable runnable) {
+		try {
+			ensureStarted().execute(runnable);
+		}
+		catch (RejectedExecutionException e) {
+			// Reconfigured concurrently, the next executor takes it
+			ensureStarted().execute(runnable);
+		}
+	}
+
+	private synchronized ExecutorService ensureStarted() {
+		if (terminated) {
+			throw new RejectedExecutionException("The chat I/O executor is shut down");
+		}
+		if (executor != null && !executor.isShutdown()) {
+			return executor;
+		}
+
+		executor = virtualThreads ? createVirtualThreadExecutor() : null;
+		usingVirtualThreads = executor != null;
+		if (executor == null) {
+			executor = createPlatformThreadExecutor(poolSize);
+		}
+		return executor;
+	}
+
+	private static ExecutorService createPlatformThreadExecutor(int poolSize) {
+		var threadCount = new AtomicInteger();
+		var pool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+		                                  new LinkedBlockingQueue<>(), runnable -> {
+			var thread = new Thread(runnable, "Chat-Api I/O #" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	private static ExecutorService createVirtualThreadExecutor() {
+		// Looked up at runtime, the mod being compiled for a JVM without virtual threads
+		try {
+			var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.warn("Virtual threads are not available on this JVM, using platform I/O threads instead");
+			return null;
+		}
+	}
+
+	public long getQueued() {
+		return queued.sum();
+	}
+
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	public double getAverageWaitMillis() {
+		var count = completed.sum() + failed.sum();
+		return count == 0 ? 0 : waitNanos.sum() / (count * 1_000_000d);
+	}
+
+	public double getAverageRunMillis() {
+		var count = completed.sum() + failed.sum();
+		return count == 0 ? 0 : runNanos.sum() / (count * 1_000_000d);
+	}
+
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1_000_000d;
+	}
+
+	public synchronized boolean isUsingVirtualThreads() {
+		return executor != null && usingVirtualThreads;
+	}
+
+	/**
+	 * Waits for the submitted tasks to complete, to be called when the server stops.
+	 */
+	public void shutdown() {
+		ExecutorService stoppingExecutor;
+		synchronized (this) {
+			terminated = true;
+			stoppingExecutor = executor;
+			executor = null;
+		}
+		if (stoppingExecutor == null) {
+			return;
+		}
+
+		stoppingExecutor.shutdown();
+		try {
+			if (!stoppingExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+				LOGGER.warn("Some chat I/O tasks did not complete before the shutdown");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private class MeteredTask implements Runnable {
+
+		private final Runnable task;
+		private final long     submitTime;
+
+		private MeteredTask(Runnable task) {
+			this.task = task;
+			this.submitTime = System.nanoTime();
+			queued.increment();
+		}
+
+		@Override
+		public void run() {
+			var startTime = System.nanoTime();
+			var wait = startTime - submitTime;
+			queued.decrement();
+			waitNanos.add(wait);
+			maxWaitNanos.accumulateAndGet(wait, Math::max);
+
+			try {
+				task.run();
+				completed.increment();
+			}
+			catch (RuntimeException e) {
+				failed.increment();
+				LOGGER.error("A chat I/O task failed", e);
+			}
+			finally {
+				runNanos.add(System.nanoTime() - startTime);
+			}
+		}
+	}
+
+	private class Lane implements Executor {
+
+		private final Queue<Runnable> tasks     = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean   scheduled = new AtomicBoolean();
+
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(new MeteredTask(task));
+			scheduleDrain();
+		}
+
+		private void scheduleDrain() {
+			if (scheduled.compareAndSet(false, true)) {
+				try {
+					submit(this::drain);
+				}
+				catch (RejectedExecutionException e) {
+					// The tasks stay queued until the next one submitted after a restart
+					scheduled.set(false);
+					throw e;
+				}
+			}
+		}
+
+		private void drain() {
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				task.run();
+			}
+
+			scheduled.set(false);
+			// A task may have been added after the last poll
+			if (!tasks.isEmpty()) {
+				scheduleDrain();
+			}
+		}
+	}
+}
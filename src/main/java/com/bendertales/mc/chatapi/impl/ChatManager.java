@@ -1,13 +1,19 @@
 package com.bendertales.mc.chatapi.impl;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import com.bendertales.mc.chatapi.ChatConstants;
 import com.bendertales.mc.chatapi.api.*;
+import com.bendertales.mc.chatapi.config.PlayerProperties;
 import com.bendertales.mc.chatapi.impl.helper.Perms;
 import com.bendertales.mc.chatapi.impl.messages.FormattedMessage;
 import com.bendertales.mc.chatapi.impl.vo.Channel;
+import com.bendertales.mc.chatapi.impl.vo.Delivery;
 import com.bendertales.mc.chatapi.impl.vo.MessageOptions;
 import com.bendertales.mc.chatapi.impl.vo.ModSettings;
 import com.bendertales.mc.chatapi.impl.vo.PlayerChannelStatus;
@@ -15,11 +21,42 @@ import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Entry point of the chat.
+ * <p>
+ * Threading model:
+ * <ul>
+ *     <li>The configuration is an immutable {@link ModSettings} snapshot, published through a volatile field.
+ *     A message reads it once and keeps using it, even if a reload happens meanwhile.</li>
+ *     <li>The players settings, the social spies and the permissions are concurrent, read from any thread
+ *     without locking.</li>
+ *     <li>The registries are frozen once the server started.</li>
+ *     <li>The indexes of the connected players (positions, channels audiences) are updated on the server thread
+ *     only, where the recipients of a message are selected. Formatting and delivery may then happen on
+ *     the dispatcher thread.</li>
+ *     <li>Blocking I/O (players settings, configuration reloads, console) runs on the {@link ChatIoExecutor}.</li>
+ * </ul>
+ */
+public class ChatManager implements Messenger {
 
+	private static final Logger LOGGER = LogManager.getLogger();
 
-public class ChatManager implements Messenger {
+	private static final List<String> SOCIAL_SPY_PERMISSIONS = List.of("chatapi.commands.admin",
+	                                                                   "chatapi.commands.socialspy");
+
+	private static final RecipientFilterOptions DEFAULT_RECIPIENT_OPTIONS    = new RecipientFilterOptions(false);
+	private static final RecipientFilterOptions SOCIAL_SPY_RECIPIENT_OPTIONS = new RecipientFilterOptions(true);
+	private static final MessageOptions         DEFAULT_MESSAGE_OPTIONS      = new MessageOptions(false);
+	private static final MessageOptions         SOCIAL_SPY_MESSAGE_OPTIONS   = new MessageOptions(true);
+
+	private static final int PERMISSIONS_REFRESH_TICKS = 20 * 30;
+
+	private static final List<String> FLOOD_CONTROL_BYPASS_PERMISSIONS = List.of("chatapi.floodcontrol.bypass");
 
-	private static final Pattern FORMATTING_REGEX = Pattern.compile("§[a-zA-Z0-9]");
 	private static final ChatManager instance = new ChatManager();
 
 	public static ChatManager get() {
@@ -28,22 +65,70 @@ public class ChatManager implements Messenger {
 	}
 
 	private final ModPropertiesRepository modPropertiesRepository = new ModPropertiesRepository();
-	private final PlayerSettingsManager   playerSettingsManager   = new PlayerSettingsManager();
+	private final ChatIoExecutor          ioExecutor              = new ChatIoExecutor();
+	private final PlayerSettingsManager   playerSettingsManager   = new PlayerSettingsManager(this::runOnServerThread,
+	                                                                                          ioExecutor);
+	private final PlayerPositionIndex     playerPositionIndex     = new PlayerPositionIndex();
+	private final ChannelAudienceIndex    channelAudienceIndex    = new ChannelAudienceIndex(this::isInChannelAudience);
+	private final AsyncMessageDispatcher  asyncMessageDispatcher  = new AsyncMessageDispatcher();
+	private final ConsoleLog              consoleLog              = new ConsoleLog(this::writeToConsole, ioExecutor);
+	private final PlayerChannelsCache     playerChannelsCache     = new PlayerChannelsCache();
+	private final FloodControl            floodControl            = new FloodControl();
+	private final Set<UUID>               activeSocialSpies       = ConcurrentHashMap.newKeySet();
+
+	private final ConfigWatcher           configWatcher           = new ConfigWatcher(
+		modPropertiesRepository.getConfigFile(), this::onConfigurationFileChanged);
+
+	// Swapped as a whole, so that messages in progress keep using a consistent snapshot
+	private volatile ModSettings     modSettings;
+	private volatile MinecraftServer minecraftServer;
+
+	/**
+	 * Reloads the configuration, keeping the players settings and the unchanged channels.
+	 * The file is read on an I/O thread, the new settings being applied on the server thread.
+	 */
+	public CompletableFuture<Void> reload() {
+		return ioExecutor.supply(modPropertiesRepository::loadSettings)
+		                 .thenAcceptAsync(newSettings -> {
+			                 Perms.getCache().invalidateAll();
+			                 apply(newSettings);
+		                 }, this::runOnServerThread);
+	}
 
-	private ModSettings              modSettings;
-	private Map<Identifier, Channel> channelsById;
-	private MinecraftServer minecraftServer;
+	public void load() {
+		apply(modPropertiesRepository.loadSettings());
+	}
+
+	/**
+	 * Called from the watcher thread, the new settings being compiled there then published on the server thread.
+	 */
+	private void onConfigurationFileChanged() {
+		ModSettings newSettings;
+		try {
+			newSettings = modPropertiesRepository.loadValidatedSettings();
+		}
+		catch (IOException | RuntimeException e) {
+			LOGGER.error("Rejected the changes of the chat configuration, the current one is kept: {}", e.getMessage());
+			return;
+		}
+		if (newSettings == null) {
+			// Written by the mod itself, or saved without changes
+			return;
+		}
 
-	public void reload() {
-		playerSettingsManager.clearSettings();
-		load();
+		runOnServerThread(() -> {
+			LOGGER.info("Applying the changes of the chat configuration");
+			Perms.getCache().invalidateAll();
+			apply(newSettings);
+		});
 	}
 
-	public void load() {
-		this.modSettings = modPropertiesRepository.loadSettings();
-		this.channelsById = modSettings.channels();
+	private void apply(ModSettings newSettings) {
+		this.modSettings = newSettings;
+		this.ioExecutor.configure(newSettings.virtualIoThreads(), newSettings.ioThreads());
+		var channelsById = newSettings.channels();
 
-		var channel = channelsById.get(modSettings.defaultChannel());
+		var channel = channelsById.get(newSettings.defaultChannel());
 		if (channel == null) {
 			channel = channelsById.get(ChatConstants.Ids.Channels.GLOBAL);
 			if (channel == null) {
@@ -52,10 +137,118 @@ public class ChatManager implements Messenger {
 		}
 
 		this.playerSettingsManager.setDefaultChannel(channel == null ? null : channel.id());
+		this.playerSettingsManager.setStorage(newSettings.playerStorage(), newSettings.playerStorageUrl());
+		this.playerSettingsManager.prefetchAll(getPlayers());
+		this.channelAudienceIndex.rebuild(channelsById, getPlayers());
+		this.playerChannelsCache.invalidateAll();
+		this.floodControl.configure(newSettings.playerRateLimit(), newSettings.channelRateLimit(),
+		                            newSettings.serverRateLimit(), channelsById.values());
+
+		this.activeSocialSpies.clear();
+		getPlayers().forEach(this::refreshSocialSpy);
+
+		if (newSettings.watchConfiguration()) {
+			configWatcher.start();
+		}
+		else {
+			configWatcher.stop();
+		}
 	}
 
 	public void setMinecraftServer(MinecraftServer minecraftServer) {
 		this.minecraftServer = minecraftServer;
+		this.playerPositionIndex.clear();
+		// Stopped with the previous server, if any
+		this.ioExecutor.start();
+		this.playerSettingsManager.open();
+	}
+
+	public void shutdown() {
+		asyncMessageDispatcher.shutdown();
+		configWatcher.stop();
+		// Completes the pending writes, the remaining ones being done from the stopping thread
+		ioExecutor.shutdown();
+		consoleLog.shutdown();
+		playerSettingsManager.shutdown();
+	}
+
+	public void onPlayerJoin(ServerPlayerEntity player) {
+		playerSettingsManager.prefetch(player);
+		Perms.getCache().fill(player);
+		playerPositionIndex.update(player);
+		channelAudienceIndex.addPlayer(player);
+		refreshSocialSpy(player);
+	}
+
+	public void onPlayerLeave(ServerPlayerEntity player) {
+		playerPositionIndex.remove(player);
+		channelAudienceIndex.removePlayer(player);
+		activeSocialSpies.remove(player.getUuid());
+		Perms.getCache().invalidate(player.getUuid());
+		playerChannelsCache.invalidate(player.getUuid());
+		floodControl.onPlayerLeave(player.getUuid());
+		playerSettingsManager.release(player);
+	}
+
+	public void onPlayerMoved(ServerPlayerEntity player) {
+		playerPositionIndex.update(player);
+	}
+
+	public void onPlayerRespawn(ServerPlayerEntity oldPlayer, ServerPlayerEntity newPlayer) {
+		playerPositionIndex.update(newPlayer);
+		channelAudienceIndex.replacePlayer(oldPlayer, newPlayer);
+	}
+
+	public void setPlayerSettingsStorage(PlayerSettingsStorage storage) {
+		playerSettingsManager.setCustomStorage(storage);
+	}
+
+	public CompletableFuture<PlayerProperties> loadPlayerProperties(UUID playerUuid) {
+		return playerSettingsManager.loadPlayerProperties(playerUuid);
+	}
+
+	public void deletePlayerSettings(UUID playerUuid) {
+		playerSettingsManager.deletePlayerSettings(playerUuid);
+	}
+
+	/**
+	 * May be called from any thread, the indexes being refreshed on the server thread.
+	 */
+	public void onPermissionsChanged(UUID playerUuid) {
+		Perms.getCache().invalidate(playerUuid);
+		playerChannelsCache.invalidate(playerUuid);
+
+		var server = minecraftServer;
+		if (server == null) {
+			// Not started yet, the player is evaluated when joining
+			return;
+		}
+		server.execute(() -> {
+			var player = server.getPlayerManager().getPlayer(playerUuid);
+			if (player != null) {
+				refreshPermissions(player);
+			}
+		});
+	}
+
+	public void onServerTick() {
+		playerPositionIndex.updateAll(getPlayers());
+
+		// Catches up with the permissions changes that were not notified.
+		// Each player has its own tick in the period, so that their permission checks do not all miss at once
+		var refreshSlot = minecraftServer.getTicks() % PERMISSIONS_REFRESH_TICKS;
+		for (ServerPlayerEntity player : getPlayers()) {
+			if (Math.floorMod(player.getUuid().hashCode(), PERMISSIONS_REFRESH_TICKS) == refreshSlot) {
+				Perms.getCache().invalidate(player.getUuid());
+				refreshPermissions(player);
+			}
+		}
+	}
+
+	private void refreshPermissions(ServerPlayerEntity player) {
+		playerChannelsCache.invalidate(player.getUuid());
+		channelAudienceIndex.addPlayer(player);
+		refreshSocialSpy(player);
 	}
 
 	public void handleMessage(ServerPlayerEntity sender, String message) throws ChatException {
@@ -71,7 +264,7 @@ public class ChatManager implements Messenger {
 	}
 
 	public void sendMessage(ServerPlayerEntity sender, String message, Identifier channelId) throws ChatException {
-		var channel = channelsById.get(channelId);
+		var channel = modSettings.channels().get(channelId);
 		if (channel == null) {
 			throw new ChatException("Channel not found");
 		}
@@ -80,27 +273,101 @@ public class ChatManager implements Messenger {
 	}
 
 	private void sendMessage(ServerPlayerEntity sender, String messageContent, Channel channel) throws ChatException {
+		var settings = modSettings;
 		ensureSenderIsAllowedInChannel(sender, channel);
+		// Before any formatting or recipients selection, so that a flood costs as little as possible
+		ensureSenderIsNotFlooding(sender, channel);
 
+		// Recipients are selected on the calling thread, as they depend on the live players state
+		var deliveries = collectDeliveries(sender, channel);
 		var message = new Message(sender, messageContent);
+
+		if (settings.asynchronousDispatch()) {
+			asyncMessageDispatcher.submit(() -> deliver(channel, message, deliveries));
+		}
+		else {
+			deliver(channel, message, deliveries);
+		}
+	}
+
+	private List<Delivery> collectDeliveries(ServerPlayerEntity sender, Channel channel) {
+		var deliveries = new ArrayList<Delivery>();
+
+		var audience = channelAudienceIndex.getAudience(channel);
+		var candidatesProvider = channel.recipientCandidatesProvider();
+		Predicate<ServerPlayerEntity> isReached;
+		if (candidatesProvider == null) {
+			audience.forEach(recipient -> collectDelivery(sender, recipient, channel, deliveries));
+			isReached = audience::contains;
+		}
+		else {
+			var candidates = candidatesProvider.getCandidates(sender);
+			candidates.stream()
+	            .filter(audience::contains)
+	            .forEach(recipient -> collectDelivery(sender, recipient, channel, deliveries));
+			isReached = p -> candidates.contains(p) && audience.contains(p);
+		}
+
+		// The sender and the social spies may be out of the channel's audience
+		Stream.concat(Stream.of(sender), getSocialSpies())
+            .distinct()
+            .filter(p -> !isReached.test(p) && isChannelVisibleForPlayer(channel, p))
+            .forEach(p -> collectDelivery(sender, p, channel, deliveries));
+
+		return deliveries;
+	}
+
+	private void collectDelivery(ServerPlayerEntity sender, ServerPlayerEntity recipient, Channel channel,
+	                             List<Delivery> deliveries) {
+		var rOptions = hasEnabledSocialSpy(recipient) ? SOCIAL_SPY_RECIPIENT_OPTIONS : DEFAULT_RECIPIENT_OPTIONS;
+		var visibility = channel.recipientsFilter().filterRecipient(sender, recipient, rOptions);
+		if (visibility.isVisible()) {
+			var mOptions = visibility == MessageVisibility.SOCIAL_SPY ? SOCIAL_SPY_MESSAGE_OPTIONS
+			                                                          : DEFAULT_MESSAGE_OPTIONS;
+			deliveries.add(new Delivery(recipient, mOptions));
+		}
+	}
+
+	private void deliver(Channel channel, Message message, List<Delivery> deliveries) {
 		var formattedMessage = channel.messageFormatter().prepare(message);
-		logToServer(sender, formattedMessage);
-		getPlayers().stream()
-            .filter(p -> isChannelVisibleForPlayer(channel, p))
-			.forEach(recipient -> {
-				var rOptions = new RecipientFilterOptions(hasEnabledSocialSpy(recipient));
-				var visibility = channel.recipientsFilter().filterRecipient(sender, recipient, rOptions);
-				if (visibility.isVisible()) {
-					var mOptions = new MessageOptions(visibility == MessageVisibility.SOCIAL_SPY);
-					recipient.sendMessage(formattedMessage.forRecipient(recipient, mOptions), false);
-				}
-			});
+		logToServer(formattedMessage);
+
+		for (Delivery delivery : deliveries) {
+			var recipient = delivery.recipient();
+			recipient.sendMessage(formattedMessage.forRecipient(recipient, delivery.options()), false);
+		}
+	}
+
+	private void logToServer(FormattedMessage formattedMessage) {
+		consoleLog.log(formattedMessage);
+	}
+
+	private void runOnServerThread(Runnable task) {
+		minecraftServer.execute(task);
+	}
+
+	private void writeToConsole(String line) {
+		minecraftServer.sendMessage(Text.literal(line));
+	}
+
+	public PlayerSettingsManager getPlayerSettingsManager() {
+		return playerSettingsManager;
+	}
+
+	public FloodControl getFloodControl() {
+		return floodControl;
 	}
 
-	private void logToServer(ServerPlayerEntity sender, FormattedMessage formattedMessage) {
-		var text = formattedMessage.forRecipient(null, new MessageOptions(false));
-		var consoleAdaptedMessage = FORMATTING_REGEX.matcher(text.getString()).replaceAll("");
-		minecraftServer.sendMessage(Text.of(consoleAdaptedMessage));
+	public PlayerChannelsCache getPlayerChannelsCache() {
+		return playerChannelsCache;
+	}
+
+	public ChatIoExecutor getIoExecutor() {
+		return ioExecutor;
+	}
+
+	public long getDroppedConsoleMessages() {
+		return consoleLog.getDropped();
 	}
 
 	public void respondToPrivateMessage(ServerPlayerEntity sender, String messageContent) throws ChatException {
@@ -120,6 +387,7 @@ public class ChatManager implements Messenger {
 		if (recipient == null || recipient.isDisconnected()) {
 			throw new ChatException("This player is not connected");
 		}
+		ensureSenderIsNotFlooding(sender, null);
 
 		var options = new MessageOptions(false);
 		var message = new Message(sender, messageContent);
@@ -147,21 +415,56 @@ public class ChatManager implements Messenger {
 		}
 	}
 
+	/**
+	 * @param channel the channel of the message, or null for a private message
+	 */
+	private void ensureSenderIsNotFlooding(ServerPlayerEntity sender, Channel channel) throws ChatException {
+		if (Perms.isOp(sender) || Perms.hasAny(sender, FLOOD_CONTROL_BYPASS_PERMISSIONS)) {
+			return;
+		}
+
+		var reachedLimit = floodControl.tryAcquire(sender.getUuid(), channel);
+		if (reachedLimit == null) {
+			return;
+		}
+
+		throw new ChatException(switch (reachedLimit) {
+			case PLAYER -> "You are sending messages too fast.";
+			case CHANNEL -> "This channel is in slow mode, wait a bit before sending a message.";
+			case SERVER -> "The chat is too busy, wait a bit before sending a message.";
+		});
+	}
+
 	private boolean hasEnabledSocialSpy(ServerPlayerEntity player) {
-		if (playerSettingsManager.hasPlayerEnabledSocialSpy(player)) {
-			var hasSocialSpyPermission = Perms.isOp(player)
-                               || Perms.hasAny(player, List.of("chatapi.commands.admin", "chatapi.commands.socialspy"));
-			if (!hasSocialSpyPermission) {
-				playerSettingsManager.disableSocialSpy(player);
-				return false;
-			}
-			return true;
+		return activeSocialSpies.contains(player.getUuid());
+	}
+
+	private Stream<ServerPlayerEntity> getSocialSpies() {
+		var playerManager = minecraftServer.getPlayerManager();
+		return activeSocialSpies.stream()
+            .map(playerManager::getPlayer)
+            .filter(Objects::nonNull);
+	}
+
+	private boolean canUseSocialSpy(ServerPlayerEntity player) {
+		return Perms.isOp(player) || Perms.hasAny(player, SOCIAL_SPY_PERMISSIONS);
+	}
+
+	private void refreshSocialSpy(ServerPlayerEntity player) {
+		if (!playerSettingsManager.hasPlayerEnabledSocialSpy(player)) {
+			activeSocialSpies.remove(player.getUuid());
+		}
+		else if (canUseSocialSpy(player)) {
+			activeSocialSpies.add(player.getUuid());
+		}
+		else {
+			playerSettingsManager.disableSocialSpy(player);
+			activeSocialSpies.remove(player.getUuid());
 		}
-		return false;
 	}
 
 	public void changeTargetedChannel(ServerPlayerEntity player, Identifier channelId) throws ChatException {
-		var targetChannel = channelsById.get(channelId);
+		var targetChannel = modSettings.channels().get(channelId);
 		if (targetChannel == null) {
 			throw new ChatException("Channel not found");
 		}
@@ -173,46 +476,49 @@ public class ChatManager implements Messenger {
 		return modSettings.localChannelDistance();
 	}
 
+	public Set<ServerPlayerEntity> getPlayersAround(ServerPlayerEntity player, int distance) {
+		return playerPositionIndex.getPlayersAround(player, distance);
+	}
+
 	private List<ServerPlayerEntity> getPlayers() {
 		return minecraftServer.getPlayerManager().getPlayerList();
 	}
 
+	/**
+	 * @return the ids of the channels the player can send messages in, to be suggested
+	 */
+	public List<String> getSendableChannelSuggestions(ServerPlayerEntity sender) {
+		return playerChannelsCache.get(sender, modSettings).suggestions();
+	}
+
 	public List<PlayerChannelStatus> getPlayerChannelsStatus(ServerPlayerEntity sender) {
 		var playerSettings = playerSettingsManager.getOrCreatePlayerSettings(sender);
-		return channelsById.values().stream()
-			.filter(ch -> ch.senderFilter().test(sender))
+		// The selected and hidden states are read live, only the senders filters being cached
+		return playerChannelsCache.get(sender, modSettings).sendable().stream()
 			.map(ch -> {
 				var isCurrent = Objects.equals(ch.id(), playerSettings.getCurrentChannel());
-				var isHidden = playerSettings.getHiddenChannels().contains(ch.id());
+				var isHidden = playerSettings.isChannelHidden(ch);
 				return new PlayerChannelStatus(ch, isCurrent, isHidden);
 			}).toList();
 	}
 
 	public Optional<Channel> getChannel(Identifier channelId) {
-		return Optional.ofNullable(channelsById.get(channelId));
+		return Optional.ofNullable(modSettings.channels().get(channelId));
 	}
 
 	public Collection<Channel> getChannels() {
-		return channelsById.values();
+		return modSettings.channels().values();
 	}
 
 	private Channel extractChannelFromMessage(String message) {
-
-		for (Channel channel : channelsById.values()) {
-			if (channel.selectorPrefix() != null
-			    && message.startsWith(channel.selectorPrefix()) && !message.equals(channel.selectorPrefix())) {
-				return channel;
-			}
-		}
-
-		return null;
+		return modSettings.channelSelectors().match(message);
 	}
 
 	private Channel getPlayerCurrentChannel(ServerPlayerEntity player) {
 		var playerSettings = playerSettingsManager.getOrCreatePlayerSettings(player);
-		var channel = channelsById.get(playerSettings.getCurrentChannel());
+		var channel = modSettings.channels().get(playerSettings.getCurrentChannel());
 		if (channel == null) {
-			channel =  channelsById.get(ChatConstants.Ids.Channels.GLOBAL);
+			channel =  modSettings.channels().get(ChatConstants.Ids.Channels.GLOBAL);
 		}
 		return channel;
 	}
@@ -226,7 +532,15 @@ public class ChatManager implements Messenger {
 	}
 
 	public boolean toggleHiddenChannelForPlayer(Channel channel, ServerPlayerEntity player) {
-		return playerSettingsManager.toggleHiddenChannelForPlayer(channel, player);
+		var hidden = playerSettingsManager.toggleHiddenChannelForPlayer(channel, player);
+		channelAudienceIndex.refresh(channel, player);
+		playerChannelsCache.invalidate(player.getUuid());
+		return hidden;
+	}
+
+	private boolean isInChannelAudience(Channel channel, ServerPlayerEntity player) {
+		return isChannelVisibleForPlayer(channel, player)
+		       && (channel.readerFilter() == null || channel.readerFilter().test(player));
 	}
 
 	private ChatManager() {
@@ -234,17 +548,25 @@ public class ChatManager implements Messenger {
 
 	public void mutePlayerInChannels(ServerPlayerEntity player, Collection<Channel> channelsToMute) {
 		playerSettingsManager.mutePlayerInChannels(player, channelsToMute);
+		playerChannelsCache.invalidate(player.getUuid());
 	}
 
 	public void unmutePlayerInChannels(ServerPlayerEntity player, Collection<Channel> channels) {
 		playerSettingsManager.unmutePlayerInChannels(player, channels);
+		playerChannelsCache.invalidate(player.getUuid());
 	}
 
-	public void enableSocialSpy(ServerPlayerEntity player) {
+	public void enableSocialSpy(ServerPlayerEntity player) throws ChatException {
+		if (!canUseSocialSpy(player)) {
+			throw new ChatException("You are not allowed to use the social spy.");
+		}
+
 		playerSettingsManager.enableSocialSpy(player);
+		activeSocialSpies.add(player.getUuid());
 	}
 
 	public void disableSocialSpy(ServerPlayerEntity player) {
 		playerSettingsManager.disableSocialSpy(player);
+		activeSocialSpies.remove(player.getUuid());
 	}
 }
@@ -0,0 +1,114 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Watches a configuration file from a dedicated thread, and notifies once its changes have settled.
+ */
+public class ConfigWatcher {
+
+	private static final Logger LOGGER    = LogManager.getLogger();
+	// Editors often write a file in several steps
+	private static final long   SETTLE_MS = 500;
+
+	private final Path         file;
+	private final Runnable     onChange;
+	private       WatchService watchService;
+
+	public ConfigWatcher(Path file, Runnable onChange) {
+		this.file = file;
+		this.onChange = onChange;
+	}
+
+	public synchronized boolean isRunning() {
+		return watchService != null;
+	}
+
+	public synchronized void start() {
+		if (watchService != null) {
+			return;
+		}
+
+		// Captured now: the field may already be cleared, or replaced, when the thread starts
+		WatchService service;
+		try {
+			service = FileSystems.getDefault().newWatchService();
+			watchService = service;
+			file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+			                          StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+		catch (IOException e) {
+			LOGGER.error("Could not watch the chat configuration file", e);
+			stop();
+			return;
+		}
+
+		var thread = new Thread(() -> run(service), "Chat-Api Config Watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void run(WatchService watchService) {
+		try {
+			while (true) {
+				var key = watchService.take();
+				var changed = pollFileEvents(key);
+
+				// Waits for the writes to settle, merging their events
+				while (changed) {
+					var nextKey = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS);
+					if (nextKey == null) {
+						break;
+					}
+					pollFileEvents(nextKey);
+				}
+
+				if (changed) {
+					onChange.run();
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e) {
+			// Stopped
+		}
+		catch (RuntimeException e) {
+			LOGGER.error("The chat configuration watcher stopped unexpectedly", e);
+		}
+	}
+
+	private boolean pollFileEvents(WatchKey key) {
+		var changed = false;
+		for (var event : key.pollEvents()) {
+			if (event.context() instanceof Path path && path.equals(file.getFileName())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+
+	public synchronized void stop() {
+		if (watchService == null) {
+			return;
+		}
+
+		try {
+			watchService.close();
+		}
+		catch (IOException e) {
+			LOGGER.error("Could not stop watching the chat configuration file", e);
+		}
+		watchService = null;
+	}
+}
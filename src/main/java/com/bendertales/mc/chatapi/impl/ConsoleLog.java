@@ -0,0 +1,89 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.bendertales.mc.chatapi.impl.messages.FormattedMessage;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Writes the messages to the console on an I/O thread, so that a slow console never stalls the dispatch.
+ * The queue is bounded: when it is full, messages are dropped and counted.
+ */
+public class ConsoleLog {
+
+	private static final Logger LOGGER   = LogManager.getLogger();
+	private static final int    CAPACITY = 1024;
+
+	private final BlockingQueue<FormattedMessage> queue    = new ArrayBlockingQueue<>(CAPACITY);
+	private final LongAdder                       dropped  = new LongAdder();
+	private final AtomicBoolean                   draining = new AtomicBoolean();
+	private final Consumer<String>                output;
+	private final Executor                        executor;
+
+	public ConsoleLog(Consumer<String> output, Executor executor) {
+		this.output = output;
+		this.executor = executor;
+	}
+
+	public void log(FormattedMessage formattedMessage) {
+		if (!queue.offer(formattedMessage)) {
+			dropped.increment();
+			return;
+		}
+
+		scheduleDrain();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	private void scheduleDrain() {
+		// A single drain at a time, so that the messages are written in order
+		if (draining.compareAndSet(false, true)) {
+			try {
+				executor.execute(this::drain);
+			}
+			catch (RejectedExecutionException e) {
+				// Shut down, the queued messages are written by shutdown()
+				draining.set(false);
+			}
+		}
+	}
+
+	private void drain() {
+		writeQueued();
+		draining.set(false);
+		// A message may have been queued after the last poll
+		if (!queue.isEmpty()) {
+			scheduleDrain();
+		}
+	}
+
+	private void writeQueued() {
+		FormattedMessage formattedMessage;
+		while ((formattedMessage = queue.poll()) != null) {
+			try {
+				output.accept(formattedMessage.forConsole());
+			}
+			catch (RuntimeException e) {
+				LOGGER.error("Could not log a chat message", e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the remaining messages from the calling thread, once the I/O executor has been shut down.
+	 */
+	public void shutdown() {
+		writeQueued();
+	}
+}
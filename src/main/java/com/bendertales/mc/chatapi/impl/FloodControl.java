@@ -0,0 +1,139 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.bendertales.mc.chatapi.impl.vo.Channel;
+import com.bendertales.mc.chatapi.impl.vo.RateLimit;
+
+
+/**
+ * Limits the rate of the messages sent by each player, in each channel (slow mode) and on the whole server,
+ * with token buckets. A message is rejected as soon as one of the buckets is empty.
+ * Limits come from the configuration and can be changed at runtime until the next reload.
+ */
+public class FloodControl {
+
+	public enum Scope {
+		PLAYER,
+		CHANNEL,
+		SERVER
+	}
+
+	private final Map<UUID, TokenBucket> playerBuckets = new ConcurrentHashMap<>();
+	private final TokenBucket            serverBucket  = new TokenBucket();
+	private final Map<Scope, LongAdder>  rejections    = new EnumMap<>(Scope.class);
+
+	// Indexed by channel index, grown on reloads
+	private volatile TokenBucket[] channelBuckets = new TokenBucket[0];
+	private volatile RateLimit     playerLimit    = RateLimit.DISABLED;
+	private volatile RateLimit     channelLimit   = RateLimit.DISABLED;
+	private volatile RateLimit     serverLimit    = RateLimit.DISABLED;
+
+	public FloodControl() {
+		for (Scope scope : Scope.values()) {
+			rejections.put(scope, new LongAdder());
+		}
+	}
+
+	/**
+	 * Applies the configured limits and creates the buckets of the channels.
+	 */
+	public synchronized void configure(RateLimit playerLimit, RateLimit channelLimit, RateLimit serverLimit,
+	                                   Collection<Channel> channels) {
+		this.playerLimit = playerLimit;
+		this.channelLimit = channelLimit;
+		this.serverLimit = serverLimit;
+
+		var maxIndex = channels.stream().mapToInt(Channel::index).max().orElse(-1);
+		if (maxIndex >= channelBuckets.length) {
+			// Existing buckets are kept, so that a reload does not reset a slow mode
+			var buckets = Arrays.copyOf(channelBuckets, maxIndex + 1);
+			for (int i = channelBuckets.length; i < buckets.length; i++) {
+				buckets[i] = new TokenBucket();
+			}
+			channelBuckets = buckets;
+		}
+	}
+
+	public void setLimit(Scope scope, RateLimit limit) {
+		switch (scope) {
+			case PLAYER -> playerLimit = limit;
+			case CHANNEL -> channelLimit = limit;
+			case SERVER -> serverLimit = limit;
+		}
+	}
+
+	public RateLimit getLimit(Scope scope) {
+		return switch (scope) {
+			case PLAYER -> playerLimit;
+			case CHANNEL -> channelLimit;
+			case SERVER -> serverLimit;
+		};
+	}
+
+	/**
+	 * Takes a token from each bucket the message goes through.
+	 * When a bucket is empty, the tokens already taken from the others are given back.
+	 * @param channel the channel of the message, or null for a private message, limited per player and server-wide
+	 * @return the scope whose limit is reached, or null if the message can be sent
+	 */
+	public Scope tryAcquire(UUID playerUuid, Channel channel) {
+		var now = System.nanoTime();
+
+		var playerLimit = this.playerLimit;
+		var playerBucket = playerLimit.isEnabled() ? getPlayerBucket(playerUuid) : null;
+		if (playerBucket != null && !playerBucket.tryTake(playerLimit, now)) {
+			return reject(Scope.PLAYER);
+		}
+
+		var channelLimit = this.channelLimit;
+		var buckets = channelBuckets;
+		var channelBucket = channelLimit.isEnabled() && channel != null && channel.index() < buckets.length
+		                    ? buckets[channel.index()] : null;
+		if (channelBucket != null && !channelBucket.tryTake(channelLimit, now)) {
+			giveBack(playerBucket, playerLimit);
+			return reject(Scope.CHANNEL);
+		}
+
+		var serverLimit = this.serverLimit;
+		if (serverLimit.isEnabled() && !serverBucket.tryTake(serverLimit, now)) {
+			giveBack(playerBucket, playerLimit);
+			giveBack(channelBucket, channelLimit);
+			return reject(Scope.SERVER);
+		}
+		return null;
+	}
+
+	private static void giveBack(TokenBucket bucket, RateLimit limit) {
+		if (bucket != null) {
+			bucket.giveBack(limit);
+		}
+	}
+
+	private TokenBucket getPlayerBucket(UUID playerUuid) {
+		var bucket = playerBuckets.get(playerUuid);
+		if (bucket == null) {
+			bucket = playerBuckets.computeIfAbsent(playerUuid, uuid -> new TokenBucket());
+		}
+		return bucket;
+	}
+
+	private Scope reject(Scope scope) {
+		rejections.get(scope).increment();
+		return scope;
+	}
+
+	public long getRejections(Scope scope) {
+		return rejections.get(scope).sum();
+	}
+
+	public void onPlayerLeave(UUID playerUuid) {
+		playerBuckets.remove(playerUuid);
+	}
+}
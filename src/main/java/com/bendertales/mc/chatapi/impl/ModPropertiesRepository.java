@@ -3,7 +3,12 @@ package com.bendertales.mc.chatapi.impl;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -11,77 +16,218 @@ import java.util.stream.Collectors;
 import com.bendertales.mc.chatapi.ChatConstants;
 import com.bendertales.mc.chatapi.api.ModChannelImplementationsProvider;
 import com.bendertales.mc.chatapi.api.PlaceholderHandler;
+import com.bendertales.mc.chatapi.api.PlaceholderValue;
 import com.bendertales.mc.chatapi.config.ChannelProperties;
 import com.bendertales.mc.chatapi.config.ModProperties;
 import com.bendertales.mc.chatapi.config.PlaceholderProperties;
+import com.bendertales.mc.chatapi.config.PlayerStorageType;
 import com.bendertales.mc.chatapi.config.PrivateMessageProperties;
+import com.bendertales.mc.chatapi.config.RateLimitProperties;
 import com.bendertales.mc.chatapi.config.serialization.IdentifierSerializer;
+import com.bendertales.mc.chatapi.impl.formats.DateTimePlaceholderHandler;
 import com.bendertales.mc.chatapi.impl.messages.MessageFormatter;
+import com.bendertales.mc.chatapi.impl.messages.TextTemplate;
 import com.bendertales.mc.chatapi.impl.vo.Channel;
 import com.bendertales.mc.chatapi.impl.vo.ModSettings;
 import com.bendertales.mc.chatapi.impl.vo.Placeholder;
 import com.bendertales.mc.chatapi.impl.vo.PrivateMessageFormatters;
+import com.bendertales.mc.chatapi.impl.vo.RateLimit;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import it.unimi.dsi.fastutil.objects.Object2ObjectMaps;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.util.Identifier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 
 
 public class ModPropertiesRepository {
 
+	private static final Logger LOGGER = LogManager.getLogger();
+
 	private final Path configFile;
 
+	// Content of the file as last written or applied, so that the watcher ignores the writes of the mod
+	private String lastKnownContent;
+
+	// Kept from the previous load, so that a reload only rebuilds what changed
+	private Map<FormatterKey, MessageFormatter> formattersByKey = Map.of();
+	private Map<Identifier, Channel>            channelsById    = Map.of();
+
 	public ModPropertiesRepository() {
 		configFile = FabricLoader.getInstance().getConfigDir()
 		                         .resolve(ChatConstants.MODID).resolve("config.json");
 	}
 
-	public ModSettings loadSettings() {
+	public Path getConfigFile() {
+		return configFile;
+	}
+
+	public synchronized ModSettings loadSettings() {
 
 		var modConfiguration = tryReadConfiguration();
-		updateFileIfNecessary(modConfiguration);
+		if (completeWithDefaults(modConfiguration)) {
+			tryWriteConfiguration(modConfiguration);
+		}
+
+		return buildSettings(modConfiguration);
+	}
 
+	/**
+	 * Loads the settings, failing instead of falling back on defaults when the configuration is invalid.
+	 * The configuration file is never written, missing values being only completed in memory.
+	 * @return the settings, or null if the file did not change since it was last written or applied
+	 * @throws IOException if the file cannot be read
+	 * @throws RuntimeException if the configuration is invalid
+	 */
+	public synchronized ModSettings loadValidatedSettings() throws IOException {
+		if (!Files.exists(configFile)) {
+			throw new IOException("The configuration file does not exist");
+		}
+
+		var fileContent = Files.readString(configFile);
+		if (fileContent.equals(lastKnownContent)) {
+			return null;
+		}
+
+		var modConfiguration = getGson().fromJson(fileContent, ModProperties.class);
+		if (modConfiguration == null) {
+			throw new IllegalArgumentException("The configuration file is empty");
+		}
+
+		completeWithDefaults(modConfiguration);
+		validate(modConfiguration);
+		var settings = buildSettings(modConfiguration);
+		lastKnownContent = fileContent;
+		return settings;
+	}
+
+	private void validate(ModProperties modProperties) {
+		var privateMessages = modProperties.getPrivateMessages();
+		if (privateMessages == null) {
+			throw new IllegalArgumentException("The private messages formats are missing");
+		}
+		try {
+			TextTemplate.checkFormat(privateMessages.getConsoleFormat());
+			TextTemplate.checkFormat(privateMessages.getSenderIsYouFormat());
+			TextTemplate.checkFormat(privateMessages.getSenderIsOtherFormat());
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid private messages format: " + e.getMessage(), e);
+		}
+
+		modProperties.getChannels().forEach((channelId, channelProperties) -> {
+			if (Registry.CHANNEL_HANDLERS.get(channelId) == null) {
+				// Skipped by prepareChannels, which reports it
+				return;
+			}
+			if (!channelProperties.isDisabled() && channelProperties.getFormat() == null) {
+				throw new IllegalArgumentException("The format of channel %s is missing".formatted(channelId));
+			}
+			try {
+				TextTemplate.checkFormat(channelProperties.getFormat());
+			}
+			catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+					"Invalid format of channel %s: %s".formatted(channelId, e.getMessage()), e);
+			}
+			try {
+				if (channelProperties.getTimeZone() != null) {
+					ZoneId.of(channelProperties.getTimeZone());
+				}
+				if (channelProperties.getTimePattern() != null) {
+					DateTimeFormatter.ofPattern(channelProperties.getTimePattern());
+				}
+			}
+			catch (DateTimeException | IllegalArgumentException e) {
+				throw new IllegalArgumentException(
+					"Invalid time settings of channel %s: %s".formatted(channelId, e.getMessage()), e);
+			}
+		});
+	}
+
+	private ModSettings buildSettings(ModProperties modConfiguration) {
 		var placeholdersById = extractSortedPlaceholders(modConfiguration);
+		var formatters = new HashMap<FormatterKey, MessageFormatter>();
 
-		var channels = prepareChannels(modConfiguration, placeholdersById);
+		var channels = prepareChannels(modConfiguration, placeholdersById, formatters);
 
-		var privateMessageFormatters = createPrivateMessageFormatters(modConfiguration, placeholdersById);
+		var privateMessageFormatters = createPrivateMessageFormatters(modConfiguration, placeholdersById, formatters);
+
+		this.formattersByKey = formatters;
+		this.channelsById = channels;
 
 		return new ModSettings(modConfiguration.getDefaultChannel(),
 		                       modConfiguration.getLocalChannelDistance(),
+		                       modConfiguration.isAsynchronousDispatch(),
+		                       modConfiguration.isWatchConfiguration(),
+		                       modConfiguration.getPlayerStorage(),
+		                       modConfiguration.getPlayerStorageUrl(),
+		                       modConfiguration.getIoThreads(),
+		                       modConfiguration.isVirtualIoThreads(),
+		                       toRateLimit(modConfiguration.getPlayerRateLimit()),
+		                       toRateLimit(modConfiguration.getChannelRateLimit()),
+		                       toRateLimit(modConfiguration.getServerRateLimit()),
 		                       privateMessageFormatters,
-		                       channels);
+		                       Object2ObjectMaps.unmodifiable(channels),
+		                       new ChannelSelectors(channels.values()));
+	}
+
+	private static RateLimit toRateLimit(RateLimitProperties properties) {
+		if (properties == null || properties.getMessagesPerSecond() <= 0) {
+			return RateLimit.DISABLED;
+		}
+		return new RateLimit(properties.getMessagesPerSecond(), Math.max(1, properties.getBurst()));
 	}
 
 	@NotNull
 	private PrivateMessageFormatters createPrivateMessageFormatters(ModProperties modProperties,
-	                                                                Map<Identifier, Placeholder> placeholdersById) {
+	                                                                Map<Identifier, Placeholder> placeholdersById,
+	                                                                Map<FormatterKey, MessageFormatter> formatters) {
 		var pmProps = modProperties.getPrivateMessages();
 		return new PrivateMessageFormatters(
-			createMessageFormatter(pmProps.getConsoleFormat(), placeholdersById),
-			createMessageFormatter(pmProps.getSenderIsYouFormat(), placeholdersById),
-			createMessageFormatter(pmProps.getSenderIsOtherFormat(), placeholdersById)
+			createMessageFormatter(pmProps.getConsoleFormat(), null, placeholdersById, formatters),
+			createMessageFormatter(pmProps.getSenderIsYouFormat(), null, placeholdersById, formatters),
+			createMessageFormatter(pmProps.getSenderIsOtherFormat(), null, placeholdersById, formatters)
 		);
 	}
 
 	@NotNull
 	private Object2ObjectOpenHashMap<Identifier, Channel> prepareChannels(
-			ModProperties modProperties, Map<Identifier, Placeholder> placeholdersById) {
+			ModProperties modProperties, Map<Identifier, Placeholder> placeholdersById,
+			Map<FormatterKey, MessageFormatter> formatters) {
 		var channels = new Object2ObjectOpenHashMap<Identifier, Channel>();
 
+		for (Identifier channelId : modProperties.getChannels().keySet()) {
+			if (Registry.CHANNEL_HANDLERS.get(channelId) == null) {
+				LOGGER.warn("Ignored the configuration of channel {}, no mod registers it", channelId);
+			}
+		}
+
 		modProperties.getChannels().entrySet().stream()
-		             .map(e -> new ChannelStruct(e.getKey(), e.getValue().isDisabled(), e.getValue().getFormat()))
-		             .filter(c -> !c.disabled())
+		             .map(e -> new ChannelStruct(e.getKey(), e.getValue().isDisabled(), e.getValue().getFormat(),
+		                                         e.getValue().getTimeZone(), e.getValue().getTimePattern()))
+		             .filter(c -> !c.disabled() && Registry.CHANNEL_HANDLERS.get(c.id()) != null)
+		             .sorted(Comparator.comparing(ChannelStruct::id))
 		             .map(c -> {
 				var channelDefault = Registry.CHANNEL_HANDLERS.get(c.id());
 				var format = c.format();
 
-				var messageFormatter = createMessageFormatter(format, placeholdersById);
+				var channelPlaceholders = withChannelClock(c, placeholdersById);
+				var messageFormatter = createMessageFormatter(format, c, channelPlaceholders, formatters);
+
+				var channelId = channelDefault.getId();
+				var previousChannel = channelsById.get(channelId);
+				if (previousChannel != null && previousChannel.messageFormatter() == messageFormatter) {
+					return previousChannel;
+				}
 
-				return new Channel(channelDefault.getId(), channelDefault.getPrefixSelector(), messageFormatter,
-		                           channelDefault.getRecipientsFilter(), channelDefault.getSenderFilter());
+				return new Channel(channelId, ChannelIndexes.indexOf(channelId),
+				                   channelDefault.getPrefixSelector(), messageFormatter,
+		                           channelDefault.getRecipientsFilter(), channelDefault.getSenderFilter(),
+		                           channelDefault.getReaderFilter(), channelDefault.getRecipientCandidatesProvider());
 			})
 		             .forEach(ch -> channels.put(ch.id(), ch));
 
@@ -89,17 +235,72 @@ public class ModPropertiesRepository {
 		return channels;
 	}
 
+	private Map<Identifier, Placeholder> withChannelClock(ChannelStruct channel,
+	                                                      Map<Identifier, Placeholder> placeholdersById) {
+		if (channel.timeZone() == null && channel.timePattern() == null) {
+			return placeholdersById;
+		}
+
+		var timePlaceholder = placeholdersById.get(ChatConstants.Ids.Formats.TIME);
+		var handler = Registry.FORMAT_HANDLERS.get(ChatConstants.Ids.Formats.TIME);
+		if (timePlaceholder == null || !(handler instanceof DateTimePlaceholderHandler dateTimeHandler)) {
+			return placeholdersById;
+		}
+
+		Map<String, PlaceholderValue> valuesByToken;
+		try {
+			var zone = channel.timeZone() == null ? ZoneId.systemDefault() : ZoneId.of(channel.timeZone());
+			var timePattern = channel.timePattern() == null ? DateTimePlaceholderHandler.DEFAULT_TIME_PATTERN
+			                                                : channel.timePattern();
+			valuesByToken = dateTimeHandler.getTokenValues(zone, timePattern);
+		}
+		catch (DateTimeException | IllegalArgumentException e) {
+			LOGGER.warn("Invalid time zone/pattern of channel {}: {}", channel.id(), e.getMessage());
+			return placeholdersById;
+		}
+
+		var channelPlaceholders = new Object2ObjectOpenHashMap<>(placeholdersById);
+		channelPlaceholders.put(timePlaceholder.id(),
+		                        new Placeholder(timePlaceholder.id(), timePlaceholder.applyOrder(),
+		                                        timePlaceholder.placeholderFormatter(),
+		                                        timePlaceholder.recipientPlaceholderFormatter(), valuesByToken));
+		return channelPlaceholders;
+	}
+
+	/**
+	 * Gives the formatter of the format, reusing the one of the previous load if its settings did not change.
+	 * @param channel the channel using the format, or null
+	 */
 	@NotNull
-	private MessageFormatter createMessageFormatter(String format, Map<Identifier, Placeholder> placeholdersById) {
-		return new MessageFormatter(format, extractNecessaryPlaceholders(placeholdersById, format));
+	private MessageFormatter createMessageFormatter(String format, ChannelStruct channel,
+	                                                Map<Identifier, Placeholder> placeholdersById,
+	                                                Map<FormatterKey, MessageFormatter> formatters) {
+		var placeholders = extractNecessaryPlaceholders(placeholdersById, format);
+		var key = new FormatterKey(format,
+		                           channel == null ? null : channel.timeZone(),
+		                           channel == null ? null : channel.timePattern(),
+		                           placeholders.stream().map(p -> new PlaceholderKey(p.id(), p.applyOrder())).toList());
+
+		var formatter = formatters.get(key);
+		if (formatter == null) {
+			formatter = formattersByKey.get(key);
+			if (formatter == null) {
+				formatter = new MessageFormatter(format, placeholders);
+			}
+			formatters.put(key, formatter);
+		}
+		return formatter;
 	}
 
 	private List<Placeholder> extractNecessaryPlaceholders(Map<Identifier, Placeholder> placeholdersById, String format) {
-		return Registry.FORMAT_HANDLERS.stream()
-            .filter(ph -> ph.shouldApplyFormat(format))
-            .map(ph -> placeholdersById.get(ph.getId()))
-            .sorted(Comparator.comparingInt(Placeholder::applyOrder))
-            .toList();
+		var placeholders = new ArrayList<Placeholder>();
+		for (PlaceholderHandler placeholderHandler : Registry.FORMAT_HANDLERS.list()) {
+			if (placeholderHandler.shouldApplyFormat(format)) {
+				placeholders.add(placeholdersById.get(placeholderHandler.getId()));
+			}
+		}
+		placeholders.sort(Comparator.comparingInt(Placeholder::applyOrder));
+		return placeholders;
 	}
 
 	private ModProperties tryReadConfiguration() {
@@ -119,7 +320,16 @@ public class ModPropertiesRepository {
 
 		var fileContent = Files.readString(configFile);
 		Gson gson = getGson();
-		return gson.fromJson(fileContent, ModProperties.class);
+		var modProperties = gson.fromJson(fileContent, ModProperties.class);
+		lastKnownContent = fileContent;
+		return modProperties;
+	}
+
+	private static RateLimitProperties rateLimitProperties(double messagesPerSecond, int burst) {
+		var rateLimitProperties = new RateLimitProperties();
+		rateLimitProperties.setMessagesPerSecond(messagesPerSecond);
+		rateLimitProperties.setBurst(burst);
+		return rateLimitProperties;
 	}
 
 	private ModProperties defaultConfiguration() {
@@ -145,12 +355,17 @@ public class ModPropertiesRepository {
 		                    .map(e -> {
 	            var ph = Registry.FORMAT_HANDLERS.get(e.getKey());
 	            return new Placeholder(ph.getId(), e.getValue().getApplicationOrder(),
-	                                   ph.getPlaceholderFormatter(), ph.getSpecificToRecipientPlaceholderFormatter());
+	                                   ph.getPlaceholderFormatter(), ph.getSpecificToRecipientPlaceholderFormatter(),
+	                                   ph.getTokenValues());
             })
 		                    .collect(Collectors.toMap(Placeholder::id, p -> p));
 	}
 
-	private void updateFileIfNecessary(ModProperties modProperties) {
+	/**
+	 * Completes the configuration with the default values of what is missing.
+	 * @return true if the configuration changed
+	 */
+	private boolean completeWithDefaults(ModProperties modProperties) {
 		boolean changedConfiguration = false;
 
 		if (modProperties.getLocalChannelDistance() < 4) {
@@ -158,6 +373,30 @@ public class ModPropertiesRepository {
 			changedConfiguration = true;
 		}
 
+		if (modProperties.getPlayerStorage() == null) {
+			modProperties.setPlayerStorage(PlayerStorageType.JSON);
+			changedConfiguration = true;
+		}
+
+		if (modProperties.getIoThreads() < 1) {
+			modProperties.setIoThreads(2);
+			changedConfiguration = true;
+		}
+
+		// Flood control is disabled unless configured, so that upgrading does not start throttling players
+		if (modProperties.getPlayerRateLimit() == null) {
+			modProperties.setPlayerRateLimit(rateLimitProperties(0, 0));
+			changedConfiguration = true;
+		}
+		if (modProperties.getChannelRateLimit() == null) {
+			modProperties.setChannelRateLimit(rateLimitProperties(0, 0));
+			changedConfiguration = true;
+		}
+		if (modProperties.getServerRateLimit() == null) {
+			modProperties.setServerRateLimit(rateLimitProperties(0, 0));
+			changedConfiguration = true;
+		}
+
 		var configPlaceholders = modProperties.getPlaceholders();
 		for (PlaceholderHandler placeholderHandler : Registry.FORMAT_HANDLERS) {
 			var placeholderId = placeholderHandler.getId();
@@ -181,9 +420,7 @@ public class ModPropertiesRepository {
 			}
 		}
 
-		if (changedConfiguration) {
-			tryWriteConfiguration(modProperties);
-		}
+		return changedConfiguration;
 	}
 
 	private void tryWriteConfiguration(ModProperties modProperties) {
@@ -203,6 +440,7 @@ public class ModPropertiesRepository {
 		var gson = getGson();
 		var configurationJson = gson.toJson(modProperties, ModProperties.class);
 		Files.writeString(configFile, configurationJson);
+		lastKnownContent = configurationJson;
 	}
 
 	@NotNull
@@ -216,7 +454,21 @@ public class ModPropertiesRepository {
 	private record ChannelStruct(
 		Identifier id,
 		boolean disabled,
-		String format
+		String format,
+		String timeZone,
+		String timePattern
+	){}
+
+	private record FormatterKey(
+		String format,
+		String timeZone,
+		String timePattern,
+		List<PlaceholderKey> placeholders
+	){}
+
+	private record PlaceholderKey(
+		Identifier id,
+		int applyOrder
 	){}
 
 }
@@ -0,0 +1,67 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.bendertales.mc.chatapi.impl.vo.Channel;
+import com.bendertales.mc.chatapi.impl.vo.ModSettings;
+import com.bendertales.mc.chatapi.impl.vo.PlayerChannels;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+
+/**
+ * Caches, per player, the channels the player can send messages in, so that the completions and the channels list
+ * do not evaluate the senders filters (and their permissions checks) again.
+ * Entries are dropped on permissions changes, mutes and hide toggles, and are stale once the configuration is reloaded.
+ */
+public class PlayerChannelsCache {
+
+	private final Map<UUID, PlayerChannels> channelsByPlayer = new ConcurrentHashMap<>();
+	private final LongAdder                 hits             = new LongAdder();
+	private final LongAdder                 misses           = new LongAdder();
+
+	public PlayerChannels get(ServerPlayerEntity player, ModSettings settings) {
+		var channels = channelsByPlayer.get(player.getUuid());
+		if (channels != null && channels.settings() == settings) {
+			hits.increment();
+			return channels;
+		}
+
+		misses.increment();
+		channels = compute(player, settings);
+		channelsByPlayer.put(player.getUuid(), channels);
+		return channels;
+	}
+
+	private static PlayerChannels compute(ServerPlayerEntity player, ModSettings settings) {
+		var sendable = new ArrayList<Channel>();
+		var suggestions = new ArrayList<String>();
+		for (Channel channel : settings.channels().values()) {
+			if (channel.senderFilter().test(player)) {
+				sendable.add(channel);
+				suggestions.add(channel.id().toString());
+			}
+		}
+		return new PlayerChannels(settings, List.copyOf(sendable), List.copyOf(suggestions));
+	}
+
+	public void invalidate(UUID playerUuid) {
+		channelsByPlayer.remove(playerUuid);
+	}
+
+	public void invalidateAll() {
+		channelsByPlayer.clear();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+}
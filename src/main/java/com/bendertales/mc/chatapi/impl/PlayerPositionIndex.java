@@ -0,0 +1,122 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.*;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+
+/**
+ * Buckets the connected players by world and chunk-sized cell, so that the players around a position
+ * can be found without checking the whole server.
+ * Cells are refreshed once per tick, lookups include a one cell margin to cover the moves made since then.
+ */
+public class PlayerPositionIndex {
+
+	private static final int CELL_SHIFT  = 4;
+	private static final int CELL_MARGIN = 1;
+
+	private final Map<World, Long2ObjectOpenHashMap<ObjectArrayList<ServerPlayerEntity>>> cellsByWorld = new HashMap<>();
+	private final Map<UUID, IndexedPlayer> indexedPlayers = new HashMap<>();
+
+	public void update(ServerPlayerEntity player) {
+		var world = player.getWorld();
+		var cell = cellOf(player.getBlockPos());
+
+		var indexed = indexedPlayers.get(player.getUuid());
+		if (indexed == null) {
+			indexed = new IndexedPlayer();
+			indexedPlayers.put(player.getUuid(), indexed);
+		}
+		else if (indexed.player == player && indexed.world == world && indexed.cell == cell) {
+			return;
+		}
+		else {
+			removeFromCell(indexed);
+		}
+
+		indexed.player = player;
+		indexed.world = world;
+		indexed.cell = cell;
+		cellsByWorld.computeIfAbsent(world, w -> new Long2ObjectOpenHashMap<>())
+		            .computeIfAbsent(cell, c -> new ObjectArrayList<>())
+		            .add(player);
+	}
+
+	public void updateAll(Collection<ServerPlayerEntity> players) {
+		for (ServerPlayerEntity player : players) {
+			update(player);
+		}
+	}
+
+	public void remove(ServerPlayerEntity player) {
+		var indexed = indexedPlayers.remove(player.getUuid());
+		if (indexed != null) {
+			removeFromCell(indexed);
+		}
+	}
+
+	public void clear() {
+		cellsByWorld.clear();
+		indexedPlayers.clear();
+	}
+
+	/**
+	 * Gets the players whose cell overlaps the given distance around the player.
+	 * The result is a superset of the players within distance, the exact distance check is left to the caller.
+	 */
+	public Set<ServerPlayerEntity> getPlayersAround(ServerPlayerEntity player, int distance) {
+		update(player);
+
+		var cells = cellsByWorld.get(player.getWorld());
+		var center = player.getBlockPos();
+		int minX = ((center.getX() - distance) >> CELL_SHIFT) - CELL_MARGIN;
+		int maxX = ((center.getX() + distance) >> CELL_SHIFT) + CELL_MARGIN;
+		int minZ = ((center.getZ() - distance) >> CELL_SHIFT) - CELL_MARGIN;
+		int maxZ = ((center.getZ() + distance) >> CELL_SHIFT) + CELL_MARGIN;
+
+		var players = new ReferenceOpenHashSet<ServerPlayerEntity>();
+		for (int x = minX; x <= maxX; x++) {
+			for (int z = minZ; z <= maxZ; z++) {
+				var cellPlayers = cells.get(ChunkPos.toLong(x, z));
+				if (cellPlayers != null) {
+					players.addAll(cellPlayers);
+				}
+			}
+		}
+		return players;
+	}
+
+	private void removeFromCell(IndexedPlayer indexed) {
+		var cells = cellsByWorld.get(indexed.world);
+		if (cells == null) {
+			return;
+		}
+
+		var cellPlayers = cells.get(indexed.cell);
+		if (cellPlayers != null) {
+			cellPlayers.remove(indexed.player);
+			if (cellPlayers.isEmpty()) {
+				cells.remove(indexed.cell);
+			}
+		}
+		if (cells.isEmpty()) {
+			cellsByWorld.remove(indexed.world);
+		}
+	}
+
+	private static long cellOf(BlockPos pos) {
+		return ChunkPos.toLong(pos.getX() >> CELL_SHIFT, pos.getZ() >> CELL_SHIFT);
+	}
+
+	private static class IndexedPlayer {
+		private ServerPlayerEntity player;
+		private World              world;
+		private long               cell;
+	}
+}
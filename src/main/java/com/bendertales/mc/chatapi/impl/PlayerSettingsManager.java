@@ -1,13 +1,21 @@
 package com.bendertales.mc.chatapi.impl;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.bendertales.mc.chatapi.ChatConstants;
+import com.bendertales.mc.chatapi.api.PlayerSettingsStorage;
 import com.bendertales.mc.chatapi.config.PlayerProperties;
+import com.bendertales.mc.chatapi.config.PlayerStorageType;
 import com.bendertales.mc.chatapi.config.serialization.IdentifierSerializer;
+import com.bendertales.mc.chatapi.impl.storage.JsonFilesBackend;
+import com.bendertales.mc.chatapi.impl.storage.JdbcBackend;
+import com.bendertales.mc.chatapi.impl.storage.RecordLogBackend;
 import com.bendertales.mc.chatapi.impl.vo.Channel;
 import com.bendertales.mc.chatapi.impl.vo.PlayerSettings;
 import com.google.gson.Gson;
@@ -15,36 +23,283 @@ import com.google.gson.GsonBuilder;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
-import org.jetbrains.annotations.NotNull;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 
+/**
+ * Holds the settings of the online players, and of the recently left ones.
+ * <p>
+ * The settings of a player are looked up without locking, from any thread.
+ * Their lifecycle (creation, load, release, deletion) is serialized on this manager,
+ * which only happens on joins, reloads and commands.
+ */
 public class PlayerSettingsManager {
 
-	private final Map<UUID, PlayerSettings> playersSettingsById = new HashMap<>();
-	private final Path configFolder;
+	private static final Logger LOGGER                  = LogManager.getLogger();
+	private static final int    RECENTLY_LEFT_CAPACITY  = 256;
+	private static final long   LOAD_RETRY_DELAY_MS     = 5000;
+	private static final long   MAX_LOAD_RETRY_DELAY_MS = 5 * 60 * 1000;
 
-	private Identifier defaultChannel;
+	private static final Gson GSON = new GsonBuilder()
+		.setPrettyPrinting()
+		.registerTypeAdapter(Identifier.class, new IdentifierSerializer())
+		.create();
+	private static final Gson COMPACT_GSON = new GsonBuilder()
+		.registerTypeAdapter(Identifier.class, new IdentifierSerializer())
+		.create();
 
-	public PlayerSettingsManager() {
-		var modContainer = FabricLoader.getInstance().getGameDir()
-		                               .resolve("mods").resolve(ChatConstants.MODID);
-		configFolder = modContainer.resolve("players");
+	private final Map<UUID, PlayerSettings> playersSettingsById = new ConcurrentHashMap<>();
+	// Guarded by this
+	private final Set<UUID>                 loadingPlayers      = new HashSet<>();
+	private final Set<UUID>                 savesAwaitingLoad   = new HashSet<>();
+	private final Map<UUID, PlayerSettings> recentlyLeft        = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<UUID, PlayerSettings> eldest) {
+			var evict = size() > RECENTLY_LEFT_CAPACITY;
+			if (evict) {
+				evictions.increment();
+			}
+			return evict;
+		}
+	};
+	private final PlayerSettingsStore       store;
+	private final Executor                  mainThreadExecutor;
+	private final Path                      modFolder;
+	private final LongAdder                 recentHits          = new LongAdder();
+	private final LongAdder                 recentMisses        = new LongAdder();
+	private final LongAdder                 evictions           = new LongAdder();
+
+	private volatile Identifier   defaultChannel;
+	private PlayerStorageType     storageType = PlayerStorageType.JSON;
+	private String                storageUrl;
+	private PlayerSettingsStorage customStorage;
+
+	public PlayerSettingsManager(Executor mainThreadExecutor, ChatIoExecutor ioExecutor) {
+		this.modFolder = FabricLoader.getInstance().getGameDir()
+		                             .resolve("mods").resolve(ChatConstants.MODID);
+		this.store = new PlayerSettingsStore(createBackend(storageType), ioExecutor);
+		this.mainThreadExecutor = mainThreadExecutor;
 	}
 
-	public PlayerSettings getOrCreatePlayerSettings(ServerPlayerEntity player) {
-		return playersSettingsById.computeIfAbsent(player.getUuid(), id -> {
+	/**
+	 * Selects the configured storage, unless a custom storage is used.
+	 * @param storageUrl JDBC url of the SQL storage, or null for the embedded database
+	 */
+	public synchronized void setStorage(PlayerStorageType storageType, String storageUrl) {
+		if (storageType == null
+		    || storageType == this.storageType && Objects.equals(storageUrl, this.storageUrl)) {
+			return;
+		}
+
+		this.storageType = storageType;
+		this.storageUrl = storageUrl;
+		if (customStorage == null) {
+			store.switchBackend(createBackend(storageType));
+		}
+	}
+
+	/**
+	 * Replaces the configured storage by one provided by another mod.
+	 */
+	public synchronized void setCustomStorage(PlayerSettingsStorage customStorage) {
+		this.customStorage = customStorage;
+		store.switchBackend(customStorage == null ? createBackend(storageType) : customStorage);
+	}
 
-			var playerConfiguration = tryLoadPlayerConfiguration(player);
+	private PlayerSettingsStorage createBackend(PlayerStorageType storageType) {
+		var playersFolder = modFolder.resolve("players");
+		return switch (storageType) {
+			case JSON -> new JsonFilesBackend(playersFolder, GSON);
+			// The JSON files are imported when the log is created, or while the table is empty
+			case LOG -> new RecordLogBackend(modFolder.resolve("players.log"), COMPACT_GSON, playersFolder);
+			case SQL -> new JdbcBackend(storageUrl == null ? getEmbeddedDatabaseUrl() : storageUrl, playersFolder, GSON);
+		};
+	}
+
+	private String getEmbeddedDatabaseUrl() {
+		return "jdbc:h2:" + modFolder.resolve("players").toAbsolutePath();
+	}
+
+	/**
+	 * Reads the stored settings of a player, whether online or not.
+	 */
+	public CompletableFuture<PlayerProperties> loadPlayerProperties(UUID playerUuid) {
+		return store.load(playerUuid);
+	}
+
+	/**
+	 * Forgets the settings of a player, in memory and in the storage.
+	 */
+	public synchronized void deletePlayerSettings(UUID playerUuid) {
+		playersSettingsById.remove(playerUuid);
+		recentlyLeft.remove(playerUuid);
+		loadingPlayers.remove(playerUuid);
+		savesAwaitingLoad.remove(playerUuid);
+		store.delete(playerUuid);
+	}
+
+	/**
+	 * Gives the settings of the player, never waiting for the storage.
+	 * Settings not loaded yet are defaults, merged with the stored ones once they are read.
+	 */
+	public PlayerSettings getOrCreatePlayerSettings(ServerPlayerEntity player) {
+		var settings = playersSettingsById.get(player.getUuid());
+		if (settings == null) {
+			settings = prefetch(player);
+		}
+		return settings;
+	}
 
-			var settings = new PlayerSettings(id);
-			settings.setCurrentChannel(playerConfiguration.getActiveChannel());
-			settings.muteChannelsById(playerConfiguration.getMutedChannels());
+	/**
+	 * Starts loading the settings of the player in the background, to be called as soon as the player joins.
+	 */
+	public synchronized PlayerSettings prefetch(ServerPlayerEntity player) {
+		var playerUuid = player.getUuid();
+		var settings = playersSettingsById.get(playerUuid);
+		if (settings != null) {
 			return settings;
-		});
+		}
+
+		var recentSettings = recentlyLeft.remove(playerUuid);
+		if (recentSettings != null) {
+			recentHits.increment();
+			playersSettingsById.put(playerUuid, recentSettings);
+			return recentSettings;
+		}
+
+		recentMisses.increment();
+		var defaultSettings = createLoadingSettings(playerUuid);
+		load(defaultSettings, 0);
+		return defaultSettings;
+	}
+
+	private void load(PlayerSettings settings, int attempt) {
+		store.load(settings.getPlayerUuid())
+		     .whenCompleteAsync((properties, error) -> onLoaded(settings, properties, error, attempt),
+		                        mainThreadExecutor);
+	}
+
+	/**
+	 * Same as {@link #prefetch(ServerPlayerEntity)}, loading the settings of all the players at once.
+	 */
+	public synchronized void prefetchAll(Collection<ServerPlayerEntity> players) {
+		var settingsByPlayer = new HashMap<UUID, PlayerSettings>();
+		for (ServerPlayerEntity player : players) {
+			var playerUuid = player.getUuid();
+			if (playersSettingsById.containsKey(playerUuid)) {
+				continue;
+			}
+
+			var recentSettings = recentlyLeft.remove(playerUuid);
+			if (recentSettings != null) {
+				recentHits.increment();
+				playersSettingsById.put(playerUuid, recentSettings);
+			}
+			else {
+				recentMisses.increment();
+				settingsByPlayer.put(playerUuid, createLoadingSettings(playerUuid));
+			}
+		}
+
+		if (settingsByPlayer.isEmpty()) {
+			return;
+		}
+
+		store.loadAll(settingsByPlayer.keySet())
+		     .whenCompleteAsync((propertiesByPlayer, error) -> settingsByPlayer.forEach((playerUuid, settings) -> {
+			     var properties = error == null ? propertiesByPlayer.get(playerUuid) : null;
+			     onLoaded(settings, properties, error, 0);
+		     }), mainThreadExecutor);
+	}
+
+	private PlayerSettings createLoadingSettings(UUID playerUuid) {
+		var defaultSettings = new PlayerSettings(playerUuid);
+		defaultSettings.setCurrentChannel(defaultChannel);
+		playersSettingsById.put(playerUuid, defaultSettings);
+		loadingPlayers.add(playerUuid);
+		return defaultSettings;
+	}
+
+	private synchronized void onLoaded(PlayerSettings settings, PlayerProperties properties, Throwable error,
+	                                   int attempt) {
+		var playerUuid = settings.getPlayerUuid();
+		if (playersSettingsById.get(playerUuid) != settings && recentlyLeft.get(playerUuid) != settings) {
+			// Deleted or evicted in the meantime
+			return;
+		}
+
+		if (error != null) {
+			// Still loading, so that the defaults are never saved over the settings that could not be read
+			var delay = Math.min(LOAD_RETRY_DELAY_MS << Math.min(attempt, 6), MAX_LOAD_RETRY_DELAY_MS);
+			LOGGER.error("Could not load the chat settings of player {}, retrying in {} s",
+			             playerUuid, delay / 1000, error);
+			CompletableFuture.runAsync(() -> load(settings, attempt + 1),
+			                           CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS,
+			                                                             mainThreadExecutor));
+			return;
+		}
+
+		loadingPlayers.remove(playerUuid);
+		if (properties != null) {
+			merge(settings, properties);
+		}
+
+		if (savesAwaitingLoad.remove(playerUuid)) {
+			trySavePlayerConfiguration(settings);
+		}
+	}
+
+	private void merge(PlayerSettings settings, PlayerProperties properties) {
+		// A channel selected during the load wins over the stored one
+		if (Objects.equals(settings.getCurrentChannel(), defaultChannel) && properties.getActiveChannel() != null) {
+			settings.setCurrentChannel(properties.getActiveChannel());
+		}
+		if (properties.getMutedChannels() != null) {
+			settings.muteChannelsById(properties.getMutedChannels());
+		}
+	}
+
+	/**
+	 * Releases the settings of a player leaving the server.
+	 * They are kept among the recently left players, so that a quick reconnection does not read the storage.
+	 * Their changes have already been scheduled for saving.
+	 */
+	public synchronized void release(ServerPlayerEntity player) {
+		var settings = playersSettingsById.remove(player.getUuid());
+		if (settings != null) {
+			recentlyLeft.put(player.getUuid(), settings);
+		}
+	}
+
+	public int getResidentCount() {
+		return playersSettingsById.size();
+	}
+
+	public long getRecentHits() {
+		return recentHits.sum();
+	}
+
+	public long getRecentMisses() {
+		return recentMisses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
 	}
 
-	public void clearSettings() {
-		playersSettingsById.clear();
+	/**
+	 * Accepts changes again, to be called when the server starts.
+	 */
+	public void open() {
+		store.open();
+	}
+
+	/**
+	 * Writes the pending settings, to be called when the server stops.
+	 */
+	public void shutdown() {
+		store.shutdown();
 	}
 
 	public void setDefaultChannel(Identifier defaultChannel) {
@@ -57,14 +312,6 @@ public class PlayerSettingsManager {
 		trySavePlayerConfiguration(settings);
 	}
 
-	@NotNull
-	private PlayerProperties defaultConfiguration() {
-		var playerConfiguration = new PlayerProperties();
-		playerConfiguration.setActiveChannel(defaultChannel);
-		playerConfiguration.setMutedChannels(Collections.emptySet());
-		return playerConfiguration;
-	}
-
 	public boolean hasPlayerEnabledSocialSpy(ServerPlayerEntity player) {
 		var settings = getOrCreatePlayerSettings(player);
 		return settings.isEnabledSocialSpy();
@@ -107,56 +354,23 @@ public class PlayerSettingsManager {
 		settings.setEnabledSocialSpy(false);
 	}
 
-	private PlayerProperties tryLoadPlayerConfiguration(ServerPlayerEntity player) {
-		try {
-			return loadPlayerConfiguration(player);
-		}
-		catch (IOException e) {
-			return defaultConfiguration();
-		}
-	}
-
-
-	private PlayerProperties loadPlayerConfiguration(ServerPlayerEntity player) throws IOException {
-		var playerFile = configFolder.resolve(player.getUuid().toString() + ".json");
-		if (Files.exists(playerFile)) {
-			var playerJson = Files.readString(playerFile);
-			var gson = getGson();
-			return gson.fromJson(playerJson, PlayerProperties.class);
-		}
-
-		return defaultConfiguration();
-	}
-
+	/**
+	 * Schedules the save of the settings, the file being written later from a background thread.
+	 */
 	public void trySavePlayerConfiguration(PlayerSettings playerSettings) {
-		try {
-			savePlayerConfiguration(playerSettings);
-		}
-		catch (IOException e) {
-			e.printStackTrace();
+		synchronized (this) {
+			if (loadingPlayers.contains(playerSettings.getPlayerUuid())) {
+				// Saving the defaults now would overwrite the stored settings
+				savesAwaitingLoad.add(playerSettings.getPlayerUuid());
+				return;
+			}
 		}
-	}
-
-	public void savePlayerConfiguration(PlayerSettings playerSettings) throws IOException {
-		if (!Files.exists(configFolder)) {
-			Files.createDirectories(configFolder);
-		}
-		var playerFile = configFolder.resolve(playerSettings.getPlayerUuid().toString() + ".json");
 
+		// The snapshot is taken now, a concurrent change scheduling its own save anyway
 		var playerConfiguration = new PlayerProperties();
 		playerConfiguration.setActiveChannel(playerSettings.getCurrentChannel());
 		playerConfiguration.setMutedChannels(playerSettings.getMutedChannels());
 
-		var gson = getGson();
-		var json = gson.toJson(playerConfiguration);
-		Files.writeString(playerFile, json);
-	}
-
-	@NotNull
-	private Gson getGson() {
-		return new GsonBuilder()
-			.setPrettyPrinting()
-            .registerTypeAdapter(Identifier.class, new IdentifierSerializer())
-            .create();
+		store.save(playerSettings.getPlayerUuid(), playerConfiguration);
 	}
 }
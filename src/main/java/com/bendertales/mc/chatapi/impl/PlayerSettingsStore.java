@@ -0,0 +1,213 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.bendertales.mc.chatapi.api.PlayerSettingsStorage;
+import com.bendertales.mc.chatapi.config.PlayerProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Asynchronous storage of the players settings.
+ * Saves only mark the settings as dirty, the last state of each player being written in batches on an I/O lane.
+ * Loads run on the same lane, after the writes already scheduled. A change stays pending until written,
+ * so loads read it from memory until the backend has it.
+ * Every use of the backend holds the store's lock, so that the final flush never runs along a scheduled one.
+ */
+public class PlayerSettingsStore {
+
+	private static final Logger LOGGER         = LogManager.getLogger();
+	private static final long   FLUSH_DELAY_MS = 1000;
+
+	private final Map<UUID, PlayerProperties> pendingByPlayer = new ConcurrentHashMap<>();
+	private final Set<UUID>                   pendingDeletes  = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean               flushScheduled  = new AtomicBoolean();
+	private final Executor                    lane;
+	private final Executor                    delayedLane;
+	private       PlayerSettingsStorage       backend;
+	private volatile boolean                  closed;
+
+	public PlayerSettingsStore(PlayerSettingsStorage backend, ChatIoExecutor ioExecutor) {
+		this.backend = backend;
+		this.lane = ioExecutor.newLane();
+		this.delayedLane = CompletableFuture.delayedExecutor(FLUSH_DELAY_MS, TimeUnit.MILLISECONDS, lane);
+	}
+
+	/**
+	 * Schedules the write of the properties, replacing any pending write of the same player.
+	 */
+	public void save(UUID playerUuid, PlayerProperties properties) {
+		pendingDeletes.remove(playerUuid);
+		pendingByPlayer.put(playerUuid, properties);
+		scheduleFlush();
+	}
+
+	/**
+	 * Schedules the deletion of the properties, replacing any pending write of the same player.
+	 */
+	public void delete(UUID playerUuid) {
+		pendingByPlayer.remove(playerUuid);
+		pendingDeletes.add(playerUuid);
+		scheduleFlush();
+	}
+
+	/**
+	 * Reads the properties of a player on the I/O lane.
+	 * @return the future properties, completed with null if the player has none
+	 */
+	public CompletableFuture<PlayerProperties> load(UUID playerUuid) {
+		return CompletableFuture.supplyAsync(() -> {
+			var pendingProperties = pendingByPlayer.get(playerUuid);
+			if (pendingProperties != null || pendingDeletes.contains(playerUuid)) {
+				return pendingProperties;
+			}
+
+			try {
+				synchronized (this) {
+					return backend.load(playerUuid);
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, lane);
+	}
+
+	/**
+	 * Reads the properties of several players at once on the I/O lane.
+	 * @return the future properties of the players having some
+	 */
+	public CompletableFuture<Map<UUID, PlayerProperties>> loadAll(Collection<UUID> playerUuids) {
+		return CompletableFuture.supplyAsync(() -> {
+			var toLoad = new ArrayList<UUID>(playerUuids.size());
+			var propertiesByPlayer = new HashMap<UUID, PlayerProperties>();
+			for (UUID playerUuid : playerUuids) {
+				var pendingProperties = pendingByPlayer.get(playerUuid);
+				if (pendingProperties != null) {
+					propertiesByPlayer.put(playerUuid, pendingProperties);
+				}
+				else if (!pendingDeletes.contains(playerUuid)) {
+					toLoad.add(playerUuid);
+				}
+			}
+
+			try {
+				synchronized (this) {
+					propertiesByPlayer.putAll(backend.loadAll(toLoad));
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return propertiesByPlayer;
+		}, lane);
+	}
+
+	/**
+	 * Moves to another backend once the pending settings are written to the current one.
+	 */
+	public void switchBackend(PlayerSettingsStorage newBackend) {
+		lane.execute(() -> {
+			synchronized (this) {
+				if (!closed) {
+					flush();
+				}
+				closeBackend();
+				backend = newBackend;
+			}
+		});
+	}
+
+	/**
+	 * Writes the pending changes after a delay, so that the changes made meanwhile are written in the same batch.
+	 */
+	private void scheduleFlush() {
+		if (!closed && flushScheduled.compareAndSet(false, true)) {
+			delayedLane.execute(this::runScheduledFlush);
+		}
+	}
+
+	private synchronized void runScheduledFlush() {
+		// Cleared first, so that the changes made during the flush schedule the next one
+		flushScheduled.set(false);
+		if (!closed) {
+			flush();
+		}
+	}
+
+	private synchronized void flush() {
+		for (UUID playerUuid : pendingDeletes) {
+			try {
+				backend.delete(playerUuid);
+				pendingDeletes.remove(playerUuid);
+			}
+			catch (IOException | RuntimeException e) {
+				LOGGER.error("Could not delete the chat settings of player {}", playerUuid, e);
+				scheduleFlush();
+			}
+		}
+
+		// The entries stay pending until written, so that a load never misses them
+		var batch = new HashMap<>(pendingByPlayer);
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		try {
+			backend.saveAll(batch);
+		}
+		catch (IOException | RuntimeException e) {
+			LOGGER.error("Could not save the chat settings of {} players", batch.size(), e);
+			// Still pending, retried on next flush
+			scheduleFlush();
+			return;
+		}
+		// Settings saved meanwhile stay pending for the next flush
+		batch.forEach(pendingByPlayer::remove);
+	}
+
+	private void closeBackend() {
+		try {
+			backend.close();
+		}
+		catch (IOException e) {
+			LOGGER.error("Could not close the chat settings storage", e);
+		}
+	}
+
+	/**
+	 * Accepts changes again after a shutdown, the backends reopening on their first use.
+	 */
+	public void open() {
+		closed = false;
+		// A flush scheduled before the shutdown may never run
+		flushScheduled.set(false);
+		if (!pendingByPlayer.isEmpty() || !pendingDeletes.isEmpty()) {
+			scheduleFlush();
+		}
+	}
+
+	/**
+	 * Writes the remaining settings and closes the backend, once the I/O executor has been shut down.
+	 * Flushes still scheduled are then skipped.
+	 */
+	public synchronized void shutdown() {
+		closed = true;
+		// Whatever is still pending is written from the stopping thread
+		flush();
+		closeBackend();
+	}
+}
@@ -1,7 +1,10 @@
 package com.bendertales.mc.chatapi.impl;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Spliterator;
 import java.util.function.Consumer;
@@ -11,44 +14,138 @@ import com.bendertales.mc.chatapi.api.Identifiable;
 import com.bendertales.mc.chatapi.api.ModChannelImplementationsProvider;
 import com.bendertales.mc.chatapi.api.PlaceholderHandler;
 import net.minecraft.util.Identifier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 
 
+/**
+ * Handlers provided by this mod and by the other ones.
+ * <p>
+ * Registrations happen in the mod initializers, the registry being frozen once the first server started.
+ * It is never unfrozen, even when a client opens another world.
+ * Frozen, it is an immutable snapshot read without locking from any thread, listing the handlers sorted by id.
+ * Channel states are not indexed by registry position: see {@link ChannelIndexes}.
+ * Duplicate and late registrations are reported and ignored.
+ */
 public final class Registry<T extends Identifiable> implements Iterable<T> {
 
-	public static final Registry<ModChannelImplementationsProvider> CHANNEL_HANDLERS = new Registry<>();
-	public static final Registry<PlaceholderHandler>                FORMAT_HANDLERS  = new Registry<>();
+	private static final Logger LOGGER = LogManager.getLogger();
 
-	private final Map<Identifier, T> handlers = new HashMap<>();
+	public static final Registry<ModChannelImplementationsProvider> CHANNEL_HANDLERS = new Registry<>("channel");
+	public static final Registry<PlaceholderHandler>                FORMAT_HANDLERS  = new Registry<>("placeholder");
 
-	private Registry() {
+	private final String             kind;
+	// Registration phase only, guarded by this
+	private final Map<Identifier, T> registered = new HashMap<>();
+
+	private volatile Frozen<T> frozen;
+
+	private Registry(String kind) {
+		this.kind = kind;
 	}
 
-	public void register(T object) {
-		handlers.put(object.getId(), object);
+	/**
+	 * @return whether the handler was registered
+	 */
+	public synchronized boolean register(T object) {
+		var id = object.getId();
+		if (frozen != null) {
+			LOGGER.error("Ignored the {} {} registered by {}, registrations are closed once the server started",
+			             kind, id, object.getClass().getName());
+			return false;
+		}
+
+		var previous = registered.putIfAbsent(id, object);
+		if (previous != null) {
+			LOGGER.error("Ignored the {} {} registered by {}, already registered by {}",
+			             kind, id, object.getClass().getName(), previous.getClass().getName());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Ends the registration phase.
+	 */
+	public synchronized void freeze() {
+		if (frozen != null) {
+			return;
+		}
+
+		var handlers = new ArrayList<>(registered.values());
+		handlers.sort(Comparator.comparing(Identifiable::getId));
+		frozen = new Frozen<>(handlers);
+		registered.clear();
+	}
+
+	public boolean isFrozen() {
+		return frozen != null;
 	}
 
 	public T get(Identifier key) {
-		return handlers.get(key);
+		var snapshot = frozen;
+		if (snapshot == null) {
+			synchronized (this) {
+				return registered.get(key);
+			}
+		}
+
+		return snapshot.handlersById.get(key);
+	}
+
+	/**
+	 * @return the handlers, sorted by id
+	 */
+	public List<T> list() {
+		return getFrozen().list;
 	}
 
 	public Stream<T> stream() {
-		return handlers.values().stream();
+		return list().stream();
 	}
 
 	@NotNull
 	@Override
 	public Iterator<T> iterator() {
-		return handlers.values().iterator();
+		return list().iterator();
 	}
 
 	@Override
 	public void forEach(Consumer<? super T> action) {
-		handlers.values().forEach(action);
+		for (T handler : getFrozen().handlers) {
+			action.accept(handler);
+		}
 	}
 
 	@Override
 	public Spliterator<T> spliterator() {
-		return handlers.values().spliterator();
+		return list().spliterator();
+	}
+
+	private Frozen<T> getFrozen() {
+		var snapshot = frozen;
+		if (snapshot == null) {
+			throw new IllegalStateException("The %s registry is not frozen yet".formatted(kind));
+		}
+		return snapshot;
+	}
+
+	private static final class Frozen<T extends Identifiable> {
+
+		private final T[]                handlers;
+		private final List<T>            list;
+		private final Map<Identifier, T> handlersById;
+
+		@SuppressWarnings("unchecked")
+		private Frozen(List<T> sortedHandlers) {
+			this.handlers = (T[]) sortedHandlers.toArray(new Identifiable[0]);
+			this.list = List.of(handlers);
+			var byId = new HashMap<Identifier, T>(handlers.length * 2);
+			for (T handler : handlers) {
+				byId.put(handler.getId(), handler);
+			}
+			this.handlersById = byId;
+		}
 	}
 }
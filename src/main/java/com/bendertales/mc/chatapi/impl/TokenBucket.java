@@ -0,0 +1,38 @@
+package com.bendertales.mc.chatapi.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bendertales.mc.chatapi.impl.vo.RateLimit;
+
+
+/**
+ * A token bucket stored as the time at which it will be full again, so that taking a token is a single
+ * compare-and-set: no lock nor allocation when sending a message.
+ * The limit is given on each call, so that it can be changed at runtime without replacing the buckets.
+ */
+final class TokenBucket {
+
+	private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+	boolean tryTake(RateLimit limit, long now) {
+		var interval = limit.intervalNanos();
+		var capacity = limit.capacityNanos();
+		while (true) {
+			var current = fullAt.get();
+			var next = Math.max(current, now) + interval;
+			if (next - now > capacity) {
+				return false;
+			}
+			if (fullAt.compareAndSet(current, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Gives back a token taken with the same limit, when another bucket rejected the message.
+	 */
+	void giveBack(RateLimit limit) {
+		fullAt.addAndGet(-limit.intervalNanos());
+	}
+}
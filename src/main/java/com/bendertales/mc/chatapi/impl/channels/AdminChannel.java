@@ -28,6 +28,11 @@ public class AdminChannel implements ModChannelImplementationsProvider {
             || Perms.hasAny(player, singleton(PERMISSION)));
 	}
 
+	@Override
+	public Predicate<ServerPlayerEntity> getReaderFilter() {
+		return (player) -> Perms.isOp(player) || Perms.hasAny(player, singleton(PERMISSION));
+	}
+
 	@Override
 	public RecipientFilter getRecipientsFilter() {
 		return (sender, player, options) -> {
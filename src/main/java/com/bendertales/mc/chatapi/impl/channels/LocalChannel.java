@@ -5,6 +5,7 @@ import java.util.function.Predicate;
 import com.bendertales.mc.chatapi.ChatConstants;
 import com.bendertales.mc.chatapi.api.MessageVisibility;
 import com.bendertales.mc.chatapi.api.ModChannelImplementationsProvider;
+import com.bendertales.mc.chatapi.api.RecipientCandidatesProvider;
 import com.bendertales.mc.chatapi.api.RecipientFilter;
 import com.bendertales.mc.chatapi.impl.ChatManager;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -51,6 +52,11 @@ public class LocalChannel implements ModChannelImplementationsProvider {
 		};
 	}
 
+	@Override
+	public RecipientCandidatesProvider getRecipientCandidatesProvider() {
+		return sender -> chatManager.getPlayersAround(sender, chatManager.getLocalChannelDistance());
+	}
+
 	@Override
 	public Identifier getId() {
 		return ChatConstants.Ids.Channels.LOCAL;
@@ -27,6 +27,11 @@ public class ModerationChannel implements ModChannelImplementationsProvider {
 		return (player) -> Perms.isOp(player) || Perms.hasAny(player, singleton(PERMISSION));
 	}
 
+	@Override
+	public Predicate<ServerPlayerEntity> getReaderFilter() {
+		return (player) -> Perms.isOp(player) || Perms.hasAny(player, singleton(PERMISSION));
+	}
+
 	@Override
 	public RecipientFilter getRecipientsFilter() {
 		return (sender, player, options) -> {
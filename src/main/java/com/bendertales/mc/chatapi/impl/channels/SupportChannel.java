@@ -32,6 +32,11 @@ public class SupportChannel implements ModChannelImplementationsProvider {
 		return (player) -> Perms.isOp(player) || Perms.hasAny(player, List.of(SEND_PERMISSION));
 	}
 
+	@Override
+	public Predicate<ServerPlayerEntity> getReaderFilter() {
+		return (player) -> Perms.isOp(player) || Perms.hasAny(player, List.of(READ_PERMISSION));
+	}
+
 	@Override
 	public RecipientFilter getRecipientsFilter() {
 		return (sender, player, options) -> {
@@ -0,0 +1,53 @@
+package com.bendertales.mc.chatapi.impl.formats;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+
+/**
+ * Renders the time fields once per second, and hands out the rendered strings until the next second.
+ */
+public final class Clock {
+
+	public static final int HOURS   = 0;
+	public static final int MINUTES = 1;
+	public static final int SECONDS = 2;
+	public static final int TIME    = 3;
+
+	private final    ZoneId              zone;
+	private final    DateTimeFormatter[] formatters;
+	private volatile Tick                tick = new Tick(Long.MIN_VALUE, null);
+
+	public Clock(ZoneId zone, String timePattern) {
+		this.zone = zone;
+		this.formatters = new DateTimeFormatter[] {
+			DateTimeFormatter.ofPattern("HH"),
+			DateTimeFormatter.ofPattern("mm"),
+			DateTimeFormatter.ofPattern("ss"),
+			DateTimeFormatter.ofPattern(timePattern)
+		};
+	}
+
+	public String get(int field) {
+		var epochSecond = Math.floorDiv(System.currentTimeMillis(), 1000L);
+		var current = tick;
+		if (current.epochSecond != epochSecond) {
+			// Concurrent renders of the same second are harmless, they give the same strings
+			current = render(epochSecond);
+			tick = current;
+		}
+		return current.fields[field];
+	}
+
+	private Tick render(long epochSecond) {
+		var time = Instant.ofEpochSecond(epochSecond).atZone(zone);
+		var fields = new String[formatters.length];
+		for (int i = 0; i < formatters.length; i++) {
+			fields[i] = formatters[i].format(time);
+		}
+		return new Tick(epochSecond, fields);
+	}
+
+	private record Tick(long epochSecond, String[] fields) {}
+}
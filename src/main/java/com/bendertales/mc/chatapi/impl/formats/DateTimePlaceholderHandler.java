@@ -1,23 +1,26 @@
 package com.bendertales.mc.chatapi.impl.formats;
 
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.bendertales.mc.chatapi.ChatConstants;
 import com.bendertales.mc.chatapi.api.PlaceholderFormatter;
 import com.bendertales.mc.chatapi.api.PlaceholderHandler;
+import com.bendertales.mc.chatapi.api.PlaceholderValue;
 import net.minecraft.util.Identifier;
 
 
 public class DateTimePlaceholderHandler implements PlaceholderHandler {
 
+	public static final String DEFAULT_TIME_PATTERN = "HH:mm:ss";
+
 	private static final String HOUR_PLACEHOLDER = "%HH%";
 	private static final String MINUTES_PLACEHOLDER = "%mm%";
 	private static final String SECONDS_PLACEHOLDER = "%SS%";
+	private static final String TIME_PLACEHOLDER = "%TIME%";
 
-	private final DateTimeFormatter hoursFormatter = DateTimeFormatter.ofPattern("HH");
-	private final DateTimeFormatter minutesFormatter = DateTimeFormatter.ofPattern("mm");
-	private final DateTimeFormatter secondsFormatter = DateTimeFormatter.ofPattern("SS");
+	private final Map<ClockSettings, Clock> clocks = new ConcurrentHashMap<>();
 
 	@Override
 	public int getDefaultPriorityOrder() {
@@ -28,21 +31,47 @@ public class DateTimePlaceholderHandler implements PlaceholderHandler {
 	public boolean shouldApplyFormat(String format) {
 		return format.contains(HOUR_PLACEHOLDER)
 		       || format.contains(MINUTES_PLACEHOLDER)
-		       || format.contains(SECONDS_PLACEHOLDER);
+		       || format.contains(SECONDS_PLACEHOLDER)
+		       || format.contains(TIME_PLACEHOLDER);
 	}
 
 	@Override
 	public PlaceholderFormatter getPlaceholderFormatter() {
-		return (format, message) -> {
-			var now = LocalTime.now();
-			return format.replace(HOUR_PLACEHOLDER, now.format(hoursFormatter))
-			             .replace(MINUTES_PLACEHOLDER, now.format(minutesFormatter))
-			             .replace(SECONDS_PLACEHOLDER, now.format(secondsFormatter));
-		};
+		var clock = getClock(ZoneId.systemDefault(), DEFAULT_TIME_PATTERN);
+		return (format, message) -> format.replace(HOUR_PLACEHOLDER, clock.get(Clock.HOURS))
+		                                  .replace(MINUTES_PLACEHOLDER, clock.get(Clock.MINUTES))
+		                                  .replace(SECONDS_PLACEHOLDER, clock.get(Clock.SECONDS))
+		                                  .replace(TIME_PLACEHOLDER, clock.get(Clock.TIME));
+	}
+
+	@Override
+	public Map<String, PlaceholderValue> getTokenValues() {
+		return getTokenValues(ZoneId.systemDefault(), DEFAULT_TIME_PATTERN);
+	}
+
+	/**
+	 * Gives the token values rendered in a specific zone, %TIME% following the given pattern.
+	 * The clocks are shared by the channels using the same settings.
+	 */
+	public Map<String, PlaceholderValue> getTokenValues(ZoneId zone, String timePattern) {
+		var clock = getClock(zone, timePattern);
+		return Map.of(
+			HOUR_PLACEHOLDER, (message, recipient) -> clock.get(Clock.HOURS),
+			MINUTES_PLACEHOLDER, (message, recipient) -> clock.get(Clock.MINUTES),
+			SECONDS_PLACEHOLDER, (message, recipient) -> clock.get(Clock.SECONDS),
+			TIME_PLACEHOLDER, (message, recipient) -> clock.get(Clock.TIME)
+		);
+	}
+
+	private Clock getClock(ZoneId zone, String timePattern) {
+		return clocks.computeIfAbsent(new ClockSettings(zone, timePattern),
+		                              settings -> new Clock(settings.zone(), settings.timePattern()));
 	}
 
 	@Override
 	public Identifier getId() {
 		return ChatConstants.Ids.Formats.TIME;
 	}
+
+	private record ClockSettings(ZoneId zone, String timePattern) {}
 }
@@ -1,8 +1,11 @@
 package com.bendertales.mc.chatapi.impl.formats;
 
+import java.util.Map;
+
 import com.bendertales.mc.chatapi.ChatConstants;
 import com.bendertales.mc.chatapi.api.PlaceholderFormatter;
 import com.bendertales.mc.chatapi.api.PlaceholderHandler;
+import com.bendertales.mc.chatapi.api.PlaceholderValue;
 import net.minecraft.util.Identifier;
 
 
@@ -25,6 +28,11 @@ public class MessagePlaceholderHandler implements PlaceholderHandler {
 		return (format,  message) -> format.replace(MESSAGE_PLACEHOLDER, message.content());
 	}
 
+	@Override
+	public Map<String, PlaceholderValue> getTokenValues() {
+		return Map.of(MESSAGE_PLACEHOLDER, (message, recipient) -> message.content());
+	}
+
 	@Override
 	public Identifier getId() {
 		return ChatConstants.Ids.Formats.MESSAGE;
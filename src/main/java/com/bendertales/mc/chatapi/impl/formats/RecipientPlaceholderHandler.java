@@ -1,9 +1,14 @@
 package com.bendertales.mc.chatapi.impl.formats;
 
+import java.util.Map;
+
 import com.bendertales.mc.chatapi.ChatConstants;
+import com.bendertales.mc.chatapi.api.Message;
 import com.bendertales.mc.chatapi.api.PlaceholderFormatter;
 import com.bendertales.mc.chatapi.api.PlaceholderHandler;
+import com.bendertales.mc.chatapi.api.PlaceholderValue;
 import com.bendertales.mc.chatapi.api.SpecificToRecipientPlaceholderFormatter;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
 
@@ -33,9 +38,30 @@ public class RecipientPlaceholderHandler implements PlaceholderHandler {
 
 	@Override
 	public SpecificToRecipientPlaceholderFormatter getSpecificToRecipientPlaceholderFormatter() {
-		return (line, message, recipient) -> {
-			String recipientName = recipient == null ? "CONSOLE" : recipient.getEntityName();
-			return line.replace(RECIPIENT_PLACEHOLDER, recipientName);
+		return new SpecificToRecipientPlaceholderFormatter() {
+			@Override
+			public String formatMessage(String line, Message message, ServerPlayerEntity recipient) {
+				return line.replace(RECIPIENT_PLACEHOLDER, getRecipientName(recipient));
+			}
 		};
 	}
+
+	@Override
+	public Map<String, PlaceholderValue> getTokenValues() {
+		return Map.of(RECIPIENT_PLACEHOLDER, new PlaceholderValue() {
+			@Override
+			public String resolve(Message message, ServerPlayerEntity recipient) {
+				return getRecipientName(recipient);
+			}
+
+			@Override
+			public boolean isSpecificToRecipient() {
+				return true;
+			}
+		});
+	}
+
+	private static String getRecipientName(ServerPlayerEntity recipient) {
+		return recipient == null ? "CONSOLE" : recipient.getEntityName();
+	}
 }
@@ -1,8 +1,11 @@
 package com.bendertales.mc.chatapi.impl.formats;
 
+import java.util.Map;
+
 import com.bendertales.mc.chatapi.ChatConstants;
 import com.bendertales.mc.chatapi.api.PlaceholderFormatter;
 import com.bendertales.mc.chatapi.api.PlaceholderHandler;
+import com.bendertales.mc.chatapi.api.PlaceholderValue;
 import net.minecraft.util.Identifier;
 
 
@@ -25,6 +28,11 @@ public class SenderPlaceholderHandler implements PlaceholderHandler {
 		return (format, message) -> format.replace(SENDER_PLACEHOLDER, message.sender().getEntityName());
 	}
 
+	@Override
+	public Map<String, PlaceholderValue> getTokenValues() {
+		return Map.of(SENDER_PLACEHOLDER, (message, recipient) -> message.sender().getEntityName());
+	}
+
 	@Override
 	public Identifier getId() {
 		return ChatConstants.Ids.Formats.SENDER;
@@ -0,0 +1,98 @@
+package com.bendertales.mc.chatapi.impl.helper;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import me.lucko.fabric.api.permissions.v0.Permissions;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+
+/**
+ * Caches, per player, the result of the permission checks made by the mod.
+ * Entries are invalidated on permissions changes and expire after a while in case a change was not notified.
+ */
+public final class PermissionCache {
+
+	private static final long   TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+	private static final String OP_KEY    = "#op";
+	private static final int    OP_LEVEL  = 3;
+
+	private final Map<UUID, PlayerPermissions> permissionsByPlayer = new ConcurrentHashMap<>();
+	private final Set<String>                  knownPermissions    = ConcurrentHashMap.newKeySet();
+	private final LongAdder                    hits                = new LongAdder();
+	private final LongAdder                    misses              = new LongAdder();
+
+	public boolean check(ServerPlayerEntity player, String permission) {
+		knownPermissions.add(permission);
+		return get(player, permission, p -> Permissions.check(p, permission));
+	}
+
+	public boolean isOp(ServerPlayerEntity player) {
+		return get(player, OP_KEY, p -> p.hasPermissionLevel(OP_LEVEL));
+	}
+
+	/**
+	 * Resolves every permission checked so far, so that the first messages of a player do not pay for it.
+	 */
+	public void fill(ServerPlayerEntity player) {
+		var permissions = getPlayerPermissions(player);
+		permissions.results.put(OP_KEY, player.hasPermissionLevel(OP_LEVEL));
+		for (String permission : knownPermissions) {
+			permissions.results.put(permission, Permissions.check(player, permission));
+		}
+	}
+
+	public void invalidate(UUID playerUuid) {
+		permissionsByPlayer.remove(playerUuid);
+	}
+
+	public void invalidateAll() {
+		permissionsByPlayer.clear();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private boolean get(ServerPlayerEntity player, String key, Predicate<ServerPlayerEntity> check) {
+		var permissions = getPlayerPermissions(player);
+		var result = permissions.results.get(key);
+		if (result != null) {
+			hits.increment();
+			return result;
+		}
+
+		misses.increment();
+		result = check.test(player);
+		permissions.results.put(key, result);
+		return result;
+	}
+
+	private PlayerPermissions getPlayerPermissions(ServerPlayerEntity player) {
+		var now = System.nanoTime();
+		var permissions = permissionsByPlayer.get(player.getUuid());
+		if (permissions == null || now - permissions.creationTime > TTL_NANOS) {
+			permissions = new PlayerPermissions(now);
+			permissionsByPlayer.put(player.getUuid(), permissions);
+		}
+		return permissions;
+	}
+
+	private static class PlayerPermissions {
+		private final long                 creationTime;
+		private final Map<String, Boolean> results = new ConcurrentHashMap<>();
+
+		private PlayerPermissions(long creationTime) {
+			this.creationTime = creationTime;
+		}
+	}
+}
@@ -4,14 +4,21 @@ import java.util.Collection;
 
 import me.lucko.fabric.api.permissions.v0.Permissions;
 import net.minecraft.command.CommandSource;
+import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 
 
 public final class Perms {
 
+	private static final PermissionCache cache = new PermissionCache();
+
+	public static PermissionCache getCache() {
+		return cache;
+	}
+
 	public static boolean hasAny(ServerPlayerEntity player, Collection<String> permissions) {
 		for (var permission : permissions) {
-			if (Permissions.check(player, permission)) {
+			if (cache.check(player, permission)) {
 				return true;
 			}
 		}
@@ -19,6 +26,10 @@ public final class Perms {
 	}
 
 	public static boolean hasAny(CommandSource commandSource, Collection<String> permissions) {
+		if (commandSource instanceof ServerCommandSource serverSource && serverSource.getPlayer() != null) {
+			return hasAny(serverSource.getPlayer(), permissions);
+		}
+
 		for (var permission : permissions) {
 			if (Permissions.check(commandSource, permission)) {
 				return true;
@@ -28,7 +39,7 @@ public final class Perms {
 	}
 
 	public static boolean isOp(ServerPlayerEntity player) {
-		return player.hasPermissionLevel(3);
+		return cache.isOp(player);
 	}
 
 	public static boolean isOp(CommandSource commandSource) {
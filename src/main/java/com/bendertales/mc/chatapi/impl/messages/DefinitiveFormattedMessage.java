@@ -1,5 +1,8 @@
 package com.bendertales.mc.chatapi.impl.messages;
 
+import java.util.List;
+
+import com.bendertales.mc.chatapi.api.Message;
 import com.bendertales.mc.chatapi.impl.vo.MessageOptions;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
@@ -7,19 +10,30 @@ import net.minecraft.text.Text;
 
 public class DefinitiveFormattedMessage implements FormattedMessage {
 
-	private final Text text;
-	private final Text spyText;
+	private final Message      message;
+	private final TextTemplate template;
+	private final Text         text;
+	private final Text         spyText;
 
-	public DefinitiveFormattedMessage(String line) {
-		this.text = Text.of(line);
-		this.spyText = Text.of("§m*§r" + line);
+	public DefinitiveFormattedMessage(Message message, TextTemplate template) {
+		this.message = message;
+		this.template = template;
+		this.text = template.render(message, null, List.of());
+		this.spyText = FormattedMessage.toSocialSpyText(text);
+		PreEncodedTexts.encode(text);
 	}
 
 	@Override
 	public Text forRecipient(ServerPlayerEntity recipient, MessageOptions options) {
 		if (options.socialSpy()) {
+			PreEncodedTexts.encode(spyText);
 			return spyText;
 		}
 		return this.text;
 	}
+
+	@Override
+	public String forConsole() {
+		return template.toConsoleString(message, null, List.of());
+	}
 }
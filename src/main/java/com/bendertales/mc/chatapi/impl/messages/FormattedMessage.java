@@ -3,9 +3,21 @@ package com.bendertales.mc.chatapi.impl.messages;
 import com.bendertales.mc.chatapi.impl.vo.MessageOptions;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
 
 
 public interface FormattedMessage {
 
+	Text SOCIAL_SPY_PREFIX = Text.literal("*").formatted(Formatting.STRIKETHROUGH);
+
+	static Text toSocialSpyText(Text text) {
+		return Text.empty().append(SOCIAL_SPY_PREFIX).append(text);
+	}
+
 	Text forRecipient(ServerPlayerEntity recipient, MessageOptions options);
+
+	/**
+	 * @return the message as rendered for the console, without formatting
+	 */
+	String forConsole();
 }
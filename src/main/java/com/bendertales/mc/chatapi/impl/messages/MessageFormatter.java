@@ -2,24 +2,32 @@ package com.bendertales.mc.chatapi.impl.messages;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 
 import com.bendertales.mc.chatapi.api.Message;
 import com.bendertales.mc.chatapi.api.PlaceholderFormatter;
+import com.bendertales.mc.chatapi.api.PlaceholderValue;
 import com.bendertales.mc.chatapi.api.SpecificToRecipientPlaceholderFormatter;
 import com.bendertales.mc.chatapi.impl.vo.Placeholder;
 
 
 public class MessageFormatter {
 
-	private final String                     initialFormat;
-	private final ArrayList<PlaceholderFormatter> placeholderFormatters;
+	private final TextTemplate                                       template;
+	private final ArrayList<PlaceholderFormatter>                    placeholderFormatters;
 	private final ArrayList<SpecificToRecipientPlaceholderFormatter> recipientPlaceholderFormatters = new ArrayList<>(2);
 
 	public MessageFormatter(String initialFormat, Collection<Placeholder> placeholders) {
-		this.initialFormat = initialFormat;
+		var valuesByToken = new HashMap<String, PlaceholderValue>();
 		placeholderFormatters = new ArrayList<>(placeholders.size());
 
 		for (Placeholder placeholder : placeholders) {
+			if (!placeholder.valuesByToken().isEmpty()) {
+				valuesByToken.putAll(placeholder.valuesByToken());
+				continue;
+			}
+
+			// Placeholders without tokens are applied the legacy way
 			if (placeholder.recipientPlaceholderFormatter() != null) {
 				recipientPlaceholderFormatters.add(placeholder.recipientPlaceholderFormatter());
 			}
@@ -28,22 +36,19 @@ public class MessageFormatter {
 			}
 		}
 
+		template = TextTemplate.compile(initialFormat, valuesByToken);
 		placeholderFormatters.trimToSize();
 		recipientPlaceholderFormatters.trimToSize();
 	}
 
 	public FormattedMessage prepare(Message message) {
-		var line = initialFormat;
-
-		for (PlaceholderFormatter formatter : placeholderFormatters) {
-			line = formatter.formatMessage(line, message);
-		}
+		var boundTemplate = template.bind(message, placeholderFormatters);
 
-		if (recipientPlaceholderFormatters.isEmpty()) {
-			return new DefinitiveFormattedMessage(line);
+		if (!boundTemplate.hasSlots() && recipientPlaceholderFormatters.isEmpty()) {
+			return new DefinitiveFormattedMessage(message, boundTemplate);
 		}
 
-		return new PerRecipientFormattedMessage(message, recipientPlaceholderFormatters, line);
+		return new PerRecipientFormattedMessage(message, boundTemplate, recipientPlaceholderFormatters);
 	}
 
 }
@@ -1,6 +1,9 @@
 package com.bendertales.mc.chatapi.impl.messages;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.bendertales.mc.chatapi.api.Message;
 import com.bendertales.mc.chatapi.api.SpecificToRecipientPlaceholderFormatter;
@@ -12,30 +15,81 @@ import net.minecraft.text.Text;
 public class PerRecipientFormattedMessage implements FormattedMessage {
 
 	private final Message                                       message;
+	private final TextTemplate                                  template;
 	private final List<SpecificToRecipientPlaceholderFormatter> recipientPlaceholderFormatters;
-	private final String                                        line;
 
-	public PerRecipientFormattedMessage(Message message,
-	                                    List<SpecificToRecipientPlaceholderFormatter> recipientPlaceholderFormatters,
-	                                    String line) {
+	// Allocated on the first cache key, most messages having only recipient-specific placeholders
+	private Map<Object, Text> textsByKey;
+	private Map<Object, Text> spyTextsByKey;
+
+	public PerRecipientFormattedMessage(Message message, TextTemplate template,
+	                                    List<SpecificToRecipientPlaceholderFormatter> recipientPlaceholderFormatters) {
 		this.message = message;
+		this.template = template;
 		this.recipientPlaceholderFormatters = recipientPlaceholderFormatters;
-		this.line = line;
 	}
 
 
 	@Override
 	public Text forRecipient(ServerPlayerEntity recipient, MessageOptions options) {
-		String line = this.line;
-
-		for (SpecificToRecipientPlaceholderFormatter formatter : recipientPlaceholderFormatters) {
-			line = formatter.formatMessage(line, message, recipient);
+		var cacheKey = getCacheKey(recipient);
+		if (cacheKey == null) {
+			var text = render(recipient);
+			return options.socialSpy() ? FormattedMessage.toSocialSpyText(text) : text;
 		}
 
+		if (textsByKey == null) {
+			textsByKey = new HashMap<>();
+			spyTextsByKey = new HashMap<>();
+		}
 		if (options.socialSpy()) {
-			line = "§m*§r" + line;
+			return getCachedText(spyTextsByKey, cacheKey, recipient, true);
+		}
+		return getCachedText(textsByKey, cacheKey, recipient, false);
+	}
+
+	@Override
+	public String forConsole() {
+		return template.toConsoleString(message, null, recipientPlaceholderFormatters);
+	}
+
+	private Text getCachedText(Map<Object, Text> cache, Object cacheKey, ServerPlayerEntity recipient,
+	                           boolean socialSpy) {
+		var text = cache.get(cacheKey);
+		if (text != null) {
+			// The text is now shared by several recipients
+			PreEncodedTexts.encode(text);
+			return text;
 		}
 
-		return Text.of(line);
+		if (socialSpy) {
+			var normalText = textsByKey.computeIfAbsent(cacheKey, k -> render(recipient));
+			text = FormattedMessage.toSocialSpyText(normalText);
+		}
+		else {
+			text = render(recipient);
+		}
+		cache.put(cacheKey, text);
+		return text;
+	}
+
+	private Object getCacheKey(ServerPlayerEntity recipient) {
+		var keys = new ArrayList<>(2);
+		if (!template.collectCacheKeys(message, recipient, keys)) {
+			return null;
+		}
+
+		for (SpecificToRecipientPlaceholderFormatter formatter : recipientPlaceholderFormatters) {
+			var key = formatter.getCacheKey(message, recipient);
+			if (key == null) {
+				return null;
+			}
+			keys.add(key);
+		}
+		return keys.size() == 1 ? keys.get(0) : keys;
+	}
+
+	private Text render(ServerPlayerEntity recipient) {
+		return template.render(message, recipient, recipientPlaceholderFormatters);
 	}
 }
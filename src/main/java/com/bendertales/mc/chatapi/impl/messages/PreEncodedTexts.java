@@ -0,0 +1,27 @@
+package com.bendertales.mc.chatapi.impl.messages;
+
+import java.util.Map;
+
+import com.google.common.collect.MapMaker;
+import net.minecraft.text.Text;
+
+
+/**
+ * Keeps the JSON of the texts sent to many players, so that they are serialized once instead of once per packet.
+ * Texts are compared by identity and weakly referenced: an entry goes away with the message it was made for.
+ */
+public final class PreEncodedTexts {
+
+	private static final Map<Text, String> JSON_BY_TEXT = new MapMaker().weakKeys().makeMap();
+
+	public static void encode(Text text) {
+		JSON_BY_TEXT.computeIfAbsent(text, Text.Serializer::toJson);
+	}
+
+	public static String getJson(Text text) {
+		return JSON_BY_TEXT.get(text);
+	}
+
+	private PreEncodedTexts() {
+	}
+}
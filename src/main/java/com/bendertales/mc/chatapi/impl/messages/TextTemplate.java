@@ -0,0 +1,349 @@
+package com.bendertales.mc.chatapi.impl.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.bendertales.mc.chatapi.api.Message;
+import com.bendertales.mc.chatapi.api.PlaceholderFormatter;
+import com.bendertales.mc.chatapi.api.PlaceholderValue;
+import com.bendertales.mc.chatapi.api.SpecificToRecipientPlaceholderFormatter;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.LiteralTextContent;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.text.TextContent;
+import net.minecraft.util.Formatting;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * A format compiled into a flat list of styled parts: static texts, built once and shared by every message,
+ * and placeholder slots filled per message or per recipient.
+ * Formats prefixed with {@value #JSON_PREFIX} are read as JSON text components, others as legacy '§' formatted strings.
+ * In JSON formats, placeholders are only replaced in the texts: hover and click event values are kept as written.
+ */
+public final class TextTemplate {
+
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	public static final String JSON_PREFIX = "json:";
+
+	private static final char LEGACY_FORMATTING_CODE = '§';
+
+	private final Part[] parts;
+
+	private TextTemplate(Part[] parts) {
+		this.parts = parts;
+	}
+
+	public static TextTemplate compile(String format, Map<String, PlaceholderValue> valuesByToken) {
+		var parts = new ArrayList<Part>();
+		var json = format.startsWith(JSON_PREFIX) ? format.substring(JSON_PREFIX.length()) : null;
+		var component = json == null ? null : parseJson(json);
+		if (component != null) {
+			compileComponent(component, Style.EMPTY, valuesByToken, parts);
+		}
+		else {
+			// Without the prefix, which is not part of the message
+			compileLegacy(json == null ? format : json, valuesByToken, parts);
+		}
+		return new TextTemplate(parts.toArray(Part[]::new));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the format is a JSON format that cannot be parsed
+	 */
+	public static void checkFormat(String format) {
+		if (format == null || !format.startsWith(JSON_PREFIX)) {
+			return;
+		}
+
+		Text component;
+		try {
+			component = Text.Serializer.fromJson(format.substring(JSON_PREFIX.length()));
+		}
+		catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid JSON format: " + e.getMessage(), e);
+		}
+		if (component == null) {
+			throw new IllegalArgumentException("Empty JSON format");
+		}
+	}
+
+	private static Text parseJson(String json) {
+		try {
+			var component = Text.Serializer.fromJson(json);
+			if (component == null) {
+				LOGGER.warn("The JSON format {} is empty, it is used as plain text", json);
+			}
+			return component;
+		}
+		catch (RuntimeException e) {
+			// Mostly JsonParseException, a format that worked as text should not prevent the load
+			LOGGER.warn("Invalid JSON format {}, it is used as plain text: {}", json, e.getMessage());
+			return null;
+		}
+	}
+
+	private static void compileComponent(Text text, Style parentStyle, Map<String, PlaceholderValue> valuesByToken,
+	                                     List<Part> parts) {
+		var style = text.getStyle().withParent(parentStyle);
+		var content = text.getContent();
+
+		if (content instanceof LiteralTextContent literalContent) {
+			compileLiteral(literalContent.string(), style, valuesByToken, parts);
+		}
+		else if (content != TextContent.EMPTY) {
+			parts.add(new ComponentPart(MutableText.of(content).setStyle(style)));
+		}
+
+		for (Text sibling : text.getSiblings()) {
+			compileComponent(sibling, style, valuesByToken, parts);
+		}
+	}
+
+	private static void compileLiteral(String literal, Style style, Map<String, PlaceholderValue> valuesByToken,
+	                                   List<Part> parts) {
+		var segment = new StringBuilder(literal.length());
+		int i = 0;
+		while (i < literal.length()) {
+			var token = findToken(literal, i, valuesByToken);
+			if (token == null) {
+				segment.append(literal.charAt(i++));
+				continue;
+			}
+
+			addLiteralPart(segment, style, parts);
+			parts.add(new SlotPart(valuesByToken.get(token), style));
+			i += token.length();
+		}
+		addLiteralPart(segment, style, parts);
+	}
+
+	private static void compileLegacy(String format, Map<String, PlaceholderValue> valuesByToken, List<Part> parts) {
+		var style = Style.EMPTY;
+		var segment = new StringBuilder(format.length());
+		int i = 0;
+		while (i < format.length()) {
+			var c = format.charAt(i);
+			var formatting = c == LEGACY_FORMATTING_CODE && i + 1 < format.length()
+			                 ? Formatting.byCode(format.charAt(i + 1))
+			                 : null;
+			if (formatting != null) {
+				addLiteralPart(segment, style, parts);
+				style = applyLegacyFormatting(style, formatting);
+				i += 2;
+				continue;
+			}
+
+			var token = findToken(format, i, valuesByToken);
+			if (token != null) {
+				addLiteralPart(segment, style, parts);
+				parts.add(new SlotPart(valuesByToken.get(token), style));
+				i += token.length();
+				continue;
+			}
+
+			segment.append(c);
+			i++;
+		}
+		addLiteralPart(segment, style, parts);
+	}
+
+	private static Style applyLegacyFormatting(Style style, Formatting formatting) {
+		// As in the vanilla rendering, a color resets the other formattings
+		if (formatting == Formatting.RESET) {
+			return Style.EMPTY;
+		}
+		if (formatting.isColor()) {
+			return Style.EMPTY.withColor(formatting);
+		}
+		return style.withFormatting(formatting);
+	}
+
+	private static void addLiteralPart(StringBuilder segment, Style style, List<Part> parts) {
+		if (segment.isEmpty()) {
+			return;
+		}
+		parts.add(new LiteralPart(segment.toString(), style));
+		segment.setLength(0);
+	}
+
+	private static String findToken(String format, int index, Map<String, PlaceholderValue> valuesByToken) {
+		String found = null;
+		for (String token : valuesByToken.keySet()) {
+			if (format.startsWith(token, index) && (found == null || token.length() > found.length())) {
+				found = token;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Resolves the slots which are not specific to the recipient.
+	 * @param formatters applied to the static literals only, so they never see the inserted values
+	 * @return a template left with the slots specific to the recipient
+	 */
+	public TextTemplate bind(Message message, List<PlaceholderFormatter> formatters) {
+		var boundParts = new Part[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			boundParts[i] = parts[i].bind(message, formatters);
+		}
+		return new TextTemplate(boundParts);
+	}
+
+	/**
+	 * @param formatters applied to the static literals only
+	 */
+	public Text render(Message message, ServerPlayerEntity recipient,
+	                   List<SpecificToRecipientPlaceholderFormatter> formatters) {
+		if (parts.length == 1) {
+			return parts[0].render(message, recipient, formatters);
+		}
+
+		var text = Text.empty();
+		for (Part part : parts) {
+			text.append(part.render(message, recipient, formatters));
+		}
+		return text;
+	}
+
+	/**
+	 * Renders the plain text variant of the template, the styles being already stripped at compilation.
+	 * @param formatters applied to the static literals only
+	 */
+	public String toConsoleString(Message message, ServerPlayerEntity recipient,
+	                              List<SpecificToRecipientPlaceholderFormatter> formatters) {
+		var line = new StringBuilder();
+		for (Part part : parts) {
+			part.appendPlain(line, message, recipient, formatters);
+		}
+		return line.toString();
+	}
+
+	public boolean hasSlots() {
+		for (Part part : parts) {
+			if (part instanceof SlotPart) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Appends the cache keys of the slots.
+	 * @return false if a slot cannot be shared between recipients
+	 */
+	public boolean collectCacheKeys(Message message, ServerPlayerEntity recipient, List<Object> keys) {
+		for (Part part : parts) {
+			if (part instanceof SlotPart slot) {
+				var key = slot.value.getCacheKey(message, recipient);
+				if (key == null) {
+					return false;
+				}
+				keys.add(key);
+			}
+		}
+		return true;
+	}
+
+	private interface Part {
+		Part bind(Message message, List<PlaceholderFormatter> formatters);
+
+		Text render(Message message, ServerPlayerEntity recipient,
+		            List<SpecificToRecipientPlaceholderFormatter> formatters);
+
+		void appendPlain(StringBuilder line, Message message, ServerPlayerEntity recipient,
+		                 List<SpecificToRecipientPlaceholderFormatter> formatters);
+	}
+
+	private record ComponentPart(Text text) implements Part {
+
+		@Override
+		public Part bind(Message message, List<PlaceholderFormatter> formatters) {
+			return this;
+		}
+
+		@Override
+		public Text render(Message message, ServerPlayerEntity recipient,
+		                   List<SpecificToRecipientPlaceholderFormatter> formatters) {
+			return text;
+		}
+
+		@Override
+		public void appendPlain(StringBuilder line, Message message, ServerPlayerEntity recipient,
+		                        List<SpecificToRecipientPlaceholderFormatter> formatters) {
+			line.append(text.getString());
+		}
+	}
+
+	private record LiteralPart(String literal, Style style, Text text) implements Part {
+
+		private LiteralPart(String literal, Style style) {
+			this(literal, style, Text.literal(literal).setStyle(style));
+		}
+
+		@Override
+		public Part bind(Message message, List<PlaceholderFormatter> formatters) {
+			if (formatters.isEmpty()) {
+				return this;
+			}
+
+			var line = literal;
+			for (PlaceholderFormatter formatter : formatters) {
+				line = formatter.formatMessage(line, message);
+			}
+			return new LiteralPart(line, style);
+		}
+
+		@Override
+		public Text render(Message message, ServerPlayerEntity recipient,
+		                   List<SpecificToRecipientPlaceholderFormatter> formatters) {
+			if (formatters.isEmpty()) {
+				return text;
+			}
+
+			var line = literal;
+			for (SpecificToRecipientPlaceholderFormatter formatter : formatters) {
+				line = formatter.formatMessage(line, message, recipient);
+			}
+			return Text.literal(line).setStyle(style);
+		}
+
+		@Override
+		public void appendPlain(StringBuilder line, Message message, ServerPlayerEntity recipient,
+		                        List<SpecificToRecipientPlaceholderFormatter> formatters) {
+			var formattedLiteral = literal;
+			for (SpecificToRecipientPlaceholderFormatter formatter : formatters) {
+				formattedLiteral = formatter.formatMessage(formattedLiteral, message, recipient);
+			}
+			line.append(formattedLiteral);
+		}
+	}
+
+	private record SlotPart(PlaceholderValue value, Style style) implements Part {
+
+		@Override
+		public Part bind(Message message, List<PlaceholderFormatter> formatters) {
+			if (value.isSpecificToRecipient()) {
+				return this;
+			}
+			return new ComponentPart(Text.literal(value.resolve(message, null)).setStyle(style));
+		}
+
+		@Override
+		public Text render(Message message, ServerPlayerEntity recipient,
+		                   List<SpecificToRecipientPlaceholderFormatter> formatters) {
+			return Text.literal(value.resolve(message, recipient)).setStyle(style);
+		}
+
+		@Override
+		public void appendPlain(StringBuilder line, Message message, ServerPlayerEntity recipient,
+		                        List<SpecificToRecipientPlaceholderFormatter> formatters) {
+			line.append(value.resolve(message, recipient));
+		}
+	}
+}
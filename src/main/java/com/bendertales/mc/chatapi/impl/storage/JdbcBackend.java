@@ -0,0 +1,301 @@
+package com.bendertales.mc.chatapi.impl.storage;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.bendertales.mc.chatapi.api.PlayerSettingsStorage;
+import com.bendertales.mc.chatapi.config.PlayerProperties;
+import com.google.gson.Gson;
+import net.minecraft.util.Identifier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Stores the players settings in a SQL database, by default an embedded H2 database file.
+ * Batches are written with prepared statements batching, in a single transaction.
+ */
+public class JdbcBackend implements PlayerSettingsStorage {
+
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	private static final String CREATE_SETTINGS_TABLE = """
+		CREATE TABLE IF NOT EXISTS chat_player_settings (
+			player_uuid    CHAR(36) PRIMARY KEY,
+			active_channel VARCHAR(255)
+		)""";
+	private static final String CREATE_MUTED_CHANNELS_TABLE = """
+		CREATE TABLE IF NOT EXISTS chat_player_muted_channels (
+			player_uuid CHAR(36)     NOT NULL,
+			channel_id  VARCHAR(255) NOT NULL,
+			PRIMARY KEY (player_uuid, channel_id)
+		)""";
+
+	private static final String SELECT_SETTINGS       = """
+		SELECT s.player_uuid, s.active_channel, m.channel_id
+		FROM chat_player_settings s
+		LEFT JOIN chat_player_muted_channels m ON m.player_uuid = s.player_uuid
+		WHERE s.player_uuid IN (%s)""";
+	private static final String COUNT_SETTINGS        = "SELECT COUNT(*) FROM chat_player_settings";
+	private static final String DELETE_SETTINGS       = "DELETE FROM chat_player_settings WHERE player_uuid = ?";
+	private static final String DELETE_MUTED_CHANNELS = "DELETE FROM chat_player_muted_channels WHERE player_uuid = ?";
+	private static final String INSERT_SETTINGS       = "INSERT INTO chat_player_settings (player_uuid, active_channel) VALUES (?, ?)";
+	private static final String INSERT_MUTED_CHANNEL  = "INSERT INTO chat_player_muted_channels (player_uuid, channel_id) VALUES (?, ?)";
+
+	private static final String H2_URL_PREFIX = "jdbc:h2:";
+	private static final String H2_DRIVER     = "org.h2.Driver";
+	// Bound parameters per query, kept below the limits of the common databases
+	private static final int    MAX_IN_SIZE   = 500;
+
+	private final String     url;
+	private final Path       importFolder;
+	private final Gson       gson;
+	private       Connection connection;
+	private       boolean    importAttempted;
+
+	/**
+	 * @param importFolder JSON files folder imported while the settings table is empty, or null
+	 */
+	public JdbcBackend(String url, Path importFolder, Gson gson) {
+		this.url = url;
+		this.importFolder = importFolder;
+		this.gson = gson;
+	}
+
+	@Override
+	public PlayerProperties load(UUID playerUuid) throws IOException {
+		return loadAll(List.of(playerUuid)).get(playerUuid);
+	}
+
+	@Override
+	public Map<UUID, PlayerProperties> loadAll(Collection<UUID> playerUuids) throws IOException {
+		try {
+			var connection = getConnection();
+			var propertiesByPlayer = new HashMap<UUID, PlayerProperties>();
+			var uuids = List.copyOf(playerUuids);
+			for (int from = 0; from < uuids.size(); from += MAX_IN_SIZE) {
+				load(connection, uuids.subList(from, Math.min(from + MAX_IN_SIZE, uuids.size())), propertiesByPlayer);
+			}
+			connection.commit();
+			return propertiesByPlayer;
+		}
+		catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Reads the settings and the muted channels of the players with a single query.
+	 */
+	private static void load(Connection connection, List<UUID> playerUuids,
+	                         Map<UUID, PlayerProperties> propertiesByPlayer) throws SQLException {
+		var parameters = String.join(", ", Collections.nCopies(playerUuids.size(), "?"));
+		try (var selectSettings = connection.prepareStatement(SELECT_SETTINGS.formatted(parameters))) {
+			for (int i = 0; i < playerUuids.size(); i++) {
+				selectSettings.setString(i + 1, playerUuids.get(i).toString());
+			}
+
+			try (var result = selectSettings.executeQuery()) {
+				while (result.next()) {
+					var playerUuid = UUID.fromString(result.getString(1));
+					var properties = propertiesByPlayer.get(playerUuid);
+					if (properties == null) {
+						properties = new PlayerProperties();
+						var activeChannel = result.getString(2);
+						properties.setActiveChannel(activeChannel == null ? null : new Identifier(activeChannel));
+						properties.setMutedChannels(new HashSet<>());
+						propertiesByPlayer.put(playerUuid, properties);
+					}
+
+					var mutedChannel = result.getString(3);
+					if (mutedChannel != null) {
+						properties.getMutedChannels().add(new Identifier(mutedChannel));
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void saveAll(Map<UUID, PlayerProperties> propertiesByPlayer) throws IOException {
+		try {
+			var connection = getConnection();
+			try {
+				write(connection, propertiesByPlayer);
+				connection.commit();
+			}
+			catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			}
+		}
+		catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static void write(Connection connection, Map<UUID, PlayerProperties> propertiesByPlayer)
+	throws SQLException {
+		try (var deleteSettings = connection.prepareStatement(DELETE_SETTINGS);
+		     var deleteMutedChannels = connection.prepareStatement(DELETE_MUTED_CHANNELS);
+		     var insertSettings = connection.prepareStatement(INSERT_SETTINGS);
+		     var insertMutedChannel = connection.prepareStatement(INSERT_MUTED_CHANNEL)) {
+
+			for (var entry : propertiesByPlayer.entrySet()) {
+				var playerUuid = entry.getKey().toString();
+				var properties = entry.getValue();
+
+				deleteSettings.setString(1, playerUuid);
+				deleteSettings.addBatch();
+				deleteMutedChannels.setString(1, playerUuid);
+				deleteMutedChannels.addBatch();
+
+				var activeChannel = properties.getActiveChannel();
+				insertSettings.setString(1, playerUuid);
+				insertSettings.setString(2, activeChannel == null ? null : activeChannel.toString());
+				insertSettings.addBatch();
+
+				if (properties.getMutedChannels() != null) {
+					for (Identifier channelId : properties.getMutedChannels()) {
+						insertMutedChannel.setString(1, playerUuid);
+						insertMutedChannel.setString(2, channelId.toString());
+						insertMutedChannel.addBatch();
+					}
+				}
+			}
+
+			deleteSettings.executeBatch();
+			deleteMutedChannels.executeBatch();
+			insertSettings.executeBatch();
+			insertMutedChannel.executeBatch();
+		}
+	}
+
+	@Override
+	public void delete(UUID playerUuid) throws IOException {
+		try {
+			var connection = getConnection();
+			try (var deleteSettings = connection.prepareStatement(DELETE_SETTINGS);
+			     var deleteMutedChannels = connection.prepareStatement(DELETE_MUTED_CHANNELS)) {
+				deleteSettings.setString(1, playerUuid.toString());
+				deleteSettings.executeUpdate();
+				deleteMutedChannels.setString(1, playerUuid.toString());
+				deleteMutedChannels.executeUpdate();
+				connection.commit();
+			}
+			catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			}
+		}
+		catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private Connection getConnection() throws SQLException {
+		if (connection != null) {
+			return connection;
+		}
+
+		if (url.startsWith(H2_URL_PREFIX)) {
+			// The bundled driver is not visible to the DriverManager service lookup from the mod class loader
+			try {
+				Class.forName(H2_DRIVER);
+			}
+			catch (ClassNotFoundException e) {
+				throw new SQLException("The H2 driver is not available", e);
+			}
+		}
+
+		var newConnection = DriverManager.getConnection(url);
+		try {
+			newConnection.setAutoCommit(false);
+			try (var statement = newConnection.createStatement()) {
+				statement.execute(CREATE_SETTINGS_TABLE);
+				statement.execute(CREATE_MUTED_CHANNELS_TABLE);
+			}
+			newConnection.commit();
+
+			// Once per backend, a failed import never making the storage unusable
+			if (!importAttempted) {
+				importAttempted = true;
+				tryImportIfEmpty(newConnection);
+			}
+		}
+		catch (SQLException | RuntimeException e) {
+			try {
+				newConnection.close();
+			}
+			catch (SQLException closeError) {
+				e.addSuppressed(closeError);
+			}
+			throw e;
+		}
+
+		connection = newConnection;
+		return connection;
+	}
+
+	private void tryImportIfEmpty(Connection connection) throws SQLException {
+		try {
+			importIfEmpty(connection);
+		}
+		catch (SQLException | IOException | RuntimeException e) {
+			LOGGER.error("Could not import the JSON chat settings into {}, retried on the next start while no "
+			             + "settings are stored", url, e);
+			connection.rollback();
+		}
+	}
+
+	/**
+	 * Imports the JSON files in the same transaction as the check, so that an interrupted import is run again.
+	 */
+	private void importIfEmpty(Connection connection) throws SQLException, IOException {
+		if (importFolder == null || !Files.isDirectory(importFolder)) {
+			return;
+		}
+
+		try (var statement = connection.createStatement();
+		     var result = statement.executeQuery(COUNT_SETTINGS)) {
+			if (result.next() && result.getLong(1) > 0) {
+				return;
+			}
+		}
+
+		var propertiesByPlayer = new JsonFilesBackend(importFolder, gson).loadEverything();
+		write(connection, propertiesByPlayer);
+		connection.commit();
+		if (!propertiesByPlayer.isEmpty()) {
+			LOGGER.info("Imported the chat settings of {} players into {}", propertiesByPlayer.size(), url);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (connection == null) {
+			return;
+		}
+
+		try {
+			connection.close();
+		}
+		catch (SQLException e) {
+			throw new IOException(e);
+		}
+		finally {
+			connection = null;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.bendertales.mc.chatapi.impl.storage;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.bendertales.mc.chatapi.api.PlayerSettingsStorage;
+import com.bendertales.mc.chatapi.config.PlayerProperties;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Stores the settings of each player in its own JSON file.
+ * Files are written to a temporary file then moved, so that a crash never leaves a truncated file.
+ */
+public class JsonFilesBackend implements PlayerSettingsStorage {
+
+	private static final Logger LOGGER    = LogManager.getLogger();
+	private static final String EXTENSION = ".json";
+
+	private final Path folder;
+	private final Gson gson;
+
+	public JsonFilesBackend(Path folder, Gson gson) {
+		this.folder = folder;
+		this.gson = gson;
+	}
+
+	@Override
+	public PlayerProperties load(UUID playerUuid) throws IOException {
+		var playerFile = getFile(playerUuid);
+		if (!Files.exists(playerFile)) {
+			return null;
+		}
+		return gson.fromJson(Files.readString(playerFile), PlayerProperties.class);
+	}
+
+	@Override
+	public void saveAll(Map<UUID, PlayerProperties> propertiesByPlayer) throws IOException {
+		if (!Files.exists(folder)) {
+			Files.createDirectories(folder);
+		}
+
+		for (var entry : propertiesByPlayer.entrySet()) {
+			write(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void write(UUID playerUuid, PlayerProperties properties) throws IOException {
+		var playerFile = getFile(playerUuid);
+		var tempFile = folder.resolve(playerUuid.toString() + EXTENSION + ".tmp");
+		Files.writeString(tempFile, gson.toJson(properties));
+		try {
+			Files.move(tempFile, playerFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile, playerFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	@Override
+	public void delete(UUID playerUuid) throws IOException {
+		Files.deleteIfExists(getFile(playerUuid));
+	}
+
+	/**
+	 * Files that cannot be read are reported and skipped, so that they never block an import.
+	 * @return the properties of every player stored in the folder
+	 */
+	public Map<UUID, PlayerProperties> loadEverything() throws IOException {
+		var propertiesByPlayer = new HashMap<UUID, PlayerProperties>();
+		if (!Files.isDirectory(folder)) {
+			return propertiesByPlayer;
+		}
+
+		try (var files = Files.newDirectoryStream(folder, "*" + EXTENSION)) {
+			for (Path file : files) {
+				var fileName = file.getFileName().toString();
+				UUID playerUuid;
+				try {
+					playerUuid = UUID.fromString(fileName.substring(0, fileName.length() - EXTENSION.length()));
+				}
+				catch (IllegalArgumentException e) {
+					continue;
+				}
+
+				PlayerProperties properties;
+				try {
+					properties = load(playerUuid);
+				}
+				catch (IOException | JsonParseException e) {
+					LOGGER.warn("Skipped the unreadable chat settings file {}: {}", fileName, e.getMessage());
+					continue;
+				}
+				if (properties != null) {
+					propertiesByPlayer.put(playerUuid, properties);
+				}
+			}
+		}
+		return propertiesByPlayer;
+	}
+
+	private Path getFile(UUID playerUuid) {
+		return folder.resolve(playerUuid.toString() + EXTENSION);
+	}
+
+	@Override
+	public void close() {
+	}
+}
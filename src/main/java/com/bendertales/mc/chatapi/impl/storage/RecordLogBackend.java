@@ -0,0 +1,275 @@
+package com.bendertales.mc.chatapi.impl.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import com.bendertales.mc.chatapi.api.PlayerSettingsStorage;
+import com.bendertales.mc.chatapi.config.PlayerProperties;
+import com.google.gson.Gson;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Stores the settings of every player in a single append-only log.
+ * Each record is the payload length, a CRC32 of the rest of the record, the player UUID then the settings as JSON,
+ * an empty payload marking a deletion. On opening, the log is truncated at the first incomplete or corrupt record.
+ * The offset of the last record of each player is kept in memory, and the log is compacted once most of its records
+ * are outdated.
+ */
+public class RecordLogBackend implements PlayerSettingsStorage {
+
+	private static final Logger LOGGER                 = LogManager.getLogger();
+	private static final int    CHECKSUM_OFFSET        = Integer.BYTES;
+	private static final int    UUID_OFFSET            = CHECKSUM_OFFSET + Integer.BYTES;
+	private static final int    HEADER_SIZE            = UUID_OFFSET + 2 * Long.BYTES;
+	private static final int    MIN_RECORDS_TO_COMPACT = 1024;
+
+	private final Path            file;
+	private final Gson            gson;
+	private final Path            importFolder;
+	private final Map<UUID, Long> offsetsByPlayer = new HashMap<>();
+	private       FileChannel     channel;
+	private       long            records;
+
+	/**
+	 * @param importFolder JSON files folder imported when the log is created, or null
+	 */
+	public RecordLogBackend(Path file, Gson gson, Path importFolder) {
+		this.file = file;
+		this.gson = gson;
+		this.importFolder = importFolder;
+	}
+
+	@Override
+	public PlayerProperties load(UUID playerUuid) throws IOException {
+		ensureOpen();
+
+		var offset = offsetsByPlayer.get(playerUuid);
+		if (offset == null) {
+			return null;
+		}
+
+		var length = readFully(offset, Integer.BYTES).getInt();
+		var record = readFully(offset, HEADER_SIZE + length);
+		if (record.getInt(CHECKSUM_OFFSET) != checksum(record, length)) {
+			throw new IOException("The chat settings record of player %s in %s is corrupt".formatted(playerUuid, file));
+		}
+		var payload = record.position(HEADER_SIZE);
+		return gson.fromJson(StandardCharsets.UTF_8.decode(payload).toString(), PlayerProperties.class);
+	}
+
+	@Override
+	public void saveAll(Map<UUID, PlayerProperties> propertiesByPlayer) throws IOException {
+		ensureOpen();
+		append(propertiesByPlayer);
+		compactIfNecessary();
+	}
+
+	@Override
+	public void delete(UUID playerUuid) throws IOException {
+		ensureOpen();
+		if (!offsetsByPlayer.containsKey(playerUuid)) {
+			return;
+		}
+
+		var position = channel.size();
+		writeFully(channel, createRecord(playerUuid, new byte[0]), position);
+		channel.force(false);
+		offsetsByPlayer.remove(playerUuid);
+		records++;
+		compactIfNecessary();
+	}
+
+	private void compactIfNecessary() throws IOException {
+		if (records >= MIN_RECORDS_TO_COMPACT && records > 2L * offsetsByPlayer.size()) {
+			compact();
+		}
+	}
+
+	private void append(Map<UUID, PlayerProperties> propertiesByPlayer) throws IOException {
+		if (propertiesByPlayer.isEmpty()) {
+			return;
+		}
+
+		var position = channel.size();
+		for (var entry : propertiesByPlayer.entrySet()) {
+			var playerUuid = entry.getKey();
+			var payload = gson.toJson(entry.getValue()).getBytes(StandardCharsets.UTF_8);
+			var record = createRecord(playerUuid, payload);
+			writeFully(channel, record, position);
+
+			offsetsByPlayer.put(playerUuid, position);
+			position += record.limit();
+			records++;
+		}
+		channel.force(false);
+	}
+
+	private static ByteBuffer createRecord(UUID playerUuid, byte[] payload) {
+		var record = ByteBuffer.allocate(HEADER_SIZE + payload.length)
+		                       .putInt(payload.length)
+		                       .putInt(0)
+		                       .putLong(playerUuid.getMostSignificantBits())
+		                       .putLong(playerUuid.getLeastSignificantBits())
+		                       .put(payload)
+		                       .flip();
+		return record.putInt(CHECKSUM_OFFSET, checksum(record, payload.length));
+	}
+
+	/**
+	 * @return the CRC32 of the player UUID and the payload of the record
+	 */
+	private static int checksum(ByteBuffer record, int length) {
+		var crc = new CRC32();
+		crc.update(record.duplicate().limit(HEADER_SIZE + length).position(UUID_OFFSET));
+		return (int) crc.getValue();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (channel != null) {
+			return;
+		}
+
+		Files.createDirectories(file.getParent());
+		if (!Files.exists(file) && importFolder != null && Files.isDirectory(importFolder)) {
+			createFromImport();
+		}
+
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+		                           StandardOpenOption.WRITE);
+		scan();
+	}
+
+	/**
+	 * Writes the imported settings to a temporary file moved in place once complete,
+	 * so that a failed or interrupted import is run again on the next opening.
+	 */
+	private void createFromImport() throws IOException {
+		var importFile = file.resolveSibling(file.getFileName() + ".import");
+		var propertiesByPlayer = new JsonFilesBackend(importFolder, gson).loadEverything();
+
+		try (var importChannel = FileChannel.open(importFile, StandardOpenOption.CREATE,
+		                                          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long position = 0;
+			for (var entry : propertiesByPlayer.entrySet()) {
+				var payload = gson.toJson(entry.getValue()).getBytes(StandardCharsets.UTF_8);
+				var record = createRecord(entry.getKey(), payload);
+				writeFully(importChannel, record, position);
+				position += record.limit();
+			}
+			importChannel.force(false);
+		}
+
+		moveInPlace(importFile);
+		LOGGER.info("Imported the chat settings of {} players into {}", propertiesByPlayer.size(), file);
+	}
+
+	private void scan() throws IOException {
+		offsetsByPlayer.clear();
+		records = 0;
+
+		var size = channel.size();
+		long position = 0;
+		while (position + HEADER_SIZE <= size) {
+			var length = readFully(position, Integer.BYTES).getInt();
+			if (length < 0 || position + HEADER_SIZE + length > size) {
+				break;
+			}
+			var record = readFully(position, HEADER_SIZE + length);
+			if (record.getInt(CHECKSUM_OFFSET) != checksum(record, length)) {
+				// A torn or zero-filled write with a plausible length
+				break;
+			}
+			var playerUuid = new UUID(record.getLong(UUID_OFFSET), record.getLong(UUID_OFFSET + Long.BYTES));
+
+			if (length == 0) {
+				offsetsByPlayer.remove(playerUuid);
+			}
+			else {
+				offsetsByPlayer.put(playerUuid, position);
+			}
+			position += HEADER_SIZE + length;
+			records++;
+		}
+
+		if (position < size) {
+			// Left by a crash during an append
+			LOGGER.warn("Dropping the incomplete or corrupt records of {} from offset {}", file, position);
+			channel.truncate(position);
+		}
+	}
+
+	private void compact() throws IOException {
+		var compactFile = file.resolveSibling(file.getFileName() + ".compact");
+		var compactOffsets = new HashMap<UUID, Long>(offsetsByPlayer.size());
+
+		try (var compactChannel = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+		                                           StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long position = 0;
+			for (var entry : offsetsByPlayer.entrySet()) {
+				var offset = entry.getValue();
+				var length = HEADER_SIZE + readFully(offset, Integer.BYTES).getInt();
+				writeFully(compactChannel, readFully(offset, length), position);
+
+				compactOffsets.put(entry.getKey(), position);
+				position += length;
+			}
+			compactChannel.force(false);
+		}
+
+		channel.close();
+		channel = null;
+		moveInPlace(compactFile);
+
+		channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		offsetsByPlayer.clear();
+		offsetsByPlayer.putAll(compactOffsets);
+		records = compactOffsets.size();
+	}
+
+	private void moveInPlace(Path source) throws IOException {
+		try {
+			Files.move(source, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private ByteBuffer readFully(long position, int length) throws IOException {
+		var buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of " + file);
+			}
+		}
+		return buffer.flip();
+	}
+
+	private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += target.write(buffer, position);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.bendertales.mc.chatapi.impl.vo;
 
 import java.util.function.Predicate;
 
+import com.bendertales.mc.chatapi.api.RecipientCandidatesProvider;
 import com.bendertales.mc.chatapi.api.RecipientFilter;
 import com.bendertales.mc.chatapi.impl.messages.MessageFormatter;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -10,10 +11,13 @@ import net.minecraft.util.Identifier;
 
 public record Channel(
 		Identifier id,
+		int index,
 		String selectorPrefix,
 		MessageFormatter messageFormatter,
 		RecipientFilter recipientsFilter,
-		Predicate<ServerPlayerEntity> senderFilter
+		Predicate<ServerPlayerEntity> senderFilter,
+		Predicate<ServerPlayerEntity> readerFilter,
+		RecipientCandidatesProvider recipientCandidatesProvider
 ) {
 
 }
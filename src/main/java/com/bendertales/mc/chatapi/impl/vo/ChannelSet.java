@@ -0,0 +1,72 @@
+package com.bendertales.mc.chatapi.impl.vo;
+
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+
+/**
+ * A set of channel indexes, stored in a single long as long as there are less than 64 channels.
+ * Reads are lock-free, changes are serialized and published through volatile fields.
+ */
+public class ChannelSet {
+
+	private volatile long   bits;
+	// Copied on write, never modified once published
+	private volatile BitSet overflow;
+
+	public boolean contains(int index) {
+		if (index < Long.SIZE) {
+			return (bits & (1L << index)) != 0;
+		}
+		var overflow = this.overflow;
+		return overflow != null && overflow.get(index - Long.SIZE);
+	}
+
+	public synchronized void add(int index) {
+		if (index < Long.SIZE) {
+			bits |= 1L << index;
+			return;
+		}
+
+		var newOverflow = overflow == null ? new BitSet() : (BitSet) overflow.clone();
+		newOverflow.set(index - Long.SIZE);
+		overflow = newOverflow;
+	}
+
+	public synchronized void remove(int index) {
+		if (index < Long.SIZE) {
+			bits &= ~(1L << index);
+		}
+		else if (overflow != null) {
+			var newOverflow = (BitSet) overflow.clone();
+			newOverflow.clear(index - Long.SIZE);
+			overflow = newOverflow;
+		}
+	}
+
+	/**
+	 * @return whether the index is in the set after the change
+	 */
+	public synchronized boolean toggle(int index) {
+		if (contains(index)) {
+			remove(index);
+			return false;
+		}
+		add(index);
+		return true;
+	}
+
+	public void forEach(IntConsumer action) {
+		var remaining = bits;
+		while (remaining != 0) {
+			var index = Long.numberOfTrailingZeros(remaining);
+			action.accept(index);
+			remaining &= remaining - 1;
+		}
+
+		var overflow = this.overflow;
+		if (overflow != null) {
+			overflow.stream().forEach(i -> action.accept(i + Long.SIZE));
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.bendertales.mc.chatapi.impl.vo;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+
+
+public record Delivery(
+		ServerPlayerEntity recipient,
+		MessageOptions options
+) {
+}
@@ -1,13 +1,28 @@
 package com.bendertales.mc.chatapi.impl.vo;
 
+import com.bendertales.mc.chatapi.config.PlayerStorageType;
+import com.bendertales.mc.chatapi.impl.ChannelSelectors;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import net.minecraft.util.Identifier;
 
 
+/**
+ * Compiled configuration, immutable once built: it is replaced as a whole on reloads and shared by all threads.
+ */
 public record ModSettings(
 	Identifier defaultChannel,
 	int localChannelDistance,
+	boolean asynchronousDispatch,
+	boolean watchConfiguration,
+	PlayerStorageType playerStorage,
+	String playerStorageUrl,
+	int ioThreads,
+	boolean virtualIoThreads,
+	RateLimit playerRateLimit,
+	RateLimit channelRateLimit,
+	RateLimit serverRateLimit,
 	PrivateMessageFormatters privateMessageFormatters,
-	Object2ObjectMap<Identifier, Channel> channels
+	Object2ObjectMap<Identifier, Channel> channels,
+	ChannelSelectors channelSelectors
 ) {
 }
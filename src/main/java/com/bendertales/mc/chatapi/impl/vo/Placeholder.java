@@ -1,6 +1,9 @@
 package com.bendertales.mc.chatapi.impl.vo;
 
+import java.util.Map;
+
 import com.bendertales.mc.chatapi.api.PlaceholderFormatter;
+import com.bendertales.mc.chatapi.api.PlaceholderValue;
 import com.bendertales.mc.chatapi.api.SpecificToRecipientPlaceholderFormatter;
 import net.minecraft.util.Identifier;
 
@@ -9,6 +12,7 @@ public record Placeholder(
 		Identifier id,
 		int applyOrder,
 		PlaceholderFormatter placeholderFormatter,
-		SpecificToRecipientPlaceholderFormatter recipientPlaceholderFormatter
+		SpecificToRecipientPlaceholderFormatter recipientPlaceholderFormatter,
+		Map<String, PlaceholderValue> valuesByToken
 ) {
 }
@@ -0,0 +1,15 @@
+package com.bendertales.mc.chatapi.impl.vo;
+
+import java.util.List;
+
+
+/**
+ * Channels a player can send messages in, computed for a given configuration.
+ * @param suggestions the ids of the channels, ready to be suggested
+ */
+public record PlayerChannels(
+	ModSettings settings,
+	List<Channel> sendable,
+	List<String> suggestions
+) {
+}
@@ -4,19 +4,23 @@ import java.util.Collection;
 import java.util.Set;
 import java.util.UUID;
 
+import com.bendertales.mc.chatapi.impl.ChannelIndexes;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
-import it.unimi.dsi.fastutil.objects.ObjectSet;
 import net.minecraft.util.Identifier;
 
 
+/**
+ * Chat settings of a player, read from any thread and modified from commands.
+ * Every field is safely published on its own, no lock being taken to read them.
+ */
 public class PlayerSettings {
 
-	private final UUID                  playerUuid;
-	private final ObjectSet<Identifier> hiddenChannels = new ObjectOpenHashSet<>();
-	private final ObjectSet<Identifier> mutedChannels = new ObjectOpenHashSet<>();
-	private       Identifier            currentChannel;
-	private       boolean enabledSocialSpy = false;
-	private       UUID lastMessageSender = null;
+	private final    UUID       playerUuid;
+	private final    ChannelSet hiddenChannels = new ChannelSet();
+	private final    ChannelSet mutedChannels = new ChannelSet();
+	private volatile Identifier currentChannel;
+	private volatile boolean    enabledSocialSpy = false;
+	private volatile UUID       lastMessageSender = null;
 
 	public PlayerSettings(UUID playerUuid) {
 		this.playerUuid = playerUuid;
@@ -34,10 +38,6 @@ public class PlayerSettings {
 		this.lastMessageSender = lastMessageSender;
 	}
 
-	public Set<Identifier> getHiddenChannels() {
-		return hiddenChannels;
-	}
-
 	public Identifier getCurrentChannel() {
 		return currentChannel;
 	}
@@ -47,39 +47,33 @@ public class PlayerSettings {
 	}
 
 	public boolean isChannelHidden(Channel channel) {
-		return hiddenChannels.contains(channel.id());
+		return hiddenChannels.contains(channel.index());
 	}
 
 	public boolean toggleHiddenChannel(Channel channel) {
-		var channelId = channel.id();
-		if (hiddenChannels.contains(channelId)) {
-			hiddenChannels.remove(channelId);
-			return false;
-		}
-		else {
-			hiddenChannels.add(channelId);
-			return true;
-		}
+		return hiddenChannels.toggle(channel.index());
 	}
 
 	public void muteChannels(Collection<Channel> channels) {
-		channels.stream().map(Channel::id).forEach(mutedChannels::add);
+		channels.forEach(channel -> mutedChannels.add(channel.index()));
 	}
 
 	public void muteChannelsById(Collection<Identifier> channels) {
-		mutedChannels.addAll(channels);
+		channels.forEach(channelId -> mutedChannels.add(ChannelIndexes.indexOf(channelId)));
 	}
 
 	public boolean isMutedInChannel(Channel channel) {
-		return mutedChannels.contains(channel.id());
+		return mutedChannels.contains(channel.index());
 	}
 
 	public Set<Identifier> getMutedChannels() {
-		return mutedChannels;
+		var channelIds = new ObjectOpenHashSet<Identifier>();
+		mutedChannels.forEach(index -> channelIds.add(ChannelIndexes.idOf(index)));
+		return channelIds;
 	}
 
 	public void unmuteChannels(Collection<Channel> channels) {
-		channels.stream().map(Channel::id).forEach(mutedChannels::remove);
+		channels.forEach(channel -> mutedChannels.remove(channel.index()));
 	}
 
 	public boolean isEnabledSocialSpy() {
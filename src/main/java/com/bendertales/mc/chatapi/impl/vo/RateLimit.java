@@ -0,0 +1,44 @@
+package com.bendertales.mc.chatapi.impl.vo;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A token bucket refilled with {@code messagesPerSecond} tokens per second and holding up to {@code burst} tokens.
+ * A limit of 0 message per second disables it.
+ */
+public record RateLimit(
+	double messagesPerSecond,
+	int burst
+) {
+
+	public static final RateLimit DISABLED = new RateLimit(0, 0);
+
+	// One message every 1000 seconds, so that the intervals stay far from the long range
+	public static final double MIN_MESSAGES_PER_SECOND = 0.001;
+
+	public boolean isEnabled() {
+		return messagesPerSecond > 0;
+	}
+
+	/**
+	 * @return the time needed to get a token back
+	 */
+	public long intervalNanos() {
+		return (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(messagesPerSecond, MIN_MESSAGES_PER_SECOND));
+	}
+
+	/**
+	 * @return the time needed to fill the whole bucket, saturated at {@link Long#MAX_VALUE}
+	 */
+	public long capacityNanos() {
+		var interval = intervalNanos();
+		var tokens = Math.max(1, burst);
+		return interval > Long.MAX_VALUE / tokens ? Long.MAX_VALUE : interval * tokens;
+	}
+
+	@Override
+	public String toString() {
+		return isEnabled() ? "%s messages/s, burst of %d".formatted(messagesPerSecond, burst) : "disabled";
+	}
+}
@@ -0,0 +1,31 @@
+package com.bendertales.mc.chatapi.mixin;
+
+
+import com.bendertales.mc.chatapi.impl.messages.PreEncodedTexts;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.text.Text;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+
+@Mixin(PacketByteBuf.class)
+public abstract class PacketByteBufMixin {
+
+	// Same limit as the vanilla text serialization
+	private static final int MAX_TEXT_LENGTH = 262144;
+
+	@Shadow
+	public abstract PacketByteBuf writeString(String string, int maxLength);
+
+	@Inject(method = "writeText", at = @At(value = "HEAD"), cancellable = true)
+	private void writePreEncodedText(Text text, CallbackInfoReturnable<PacketByteBuf> cir) {
+		var json = PreEncodedTexts.getJson(text);
+		if (json != null) {
+			cir.setReturnValue(writeString(json, MAX_TEXT_LENGTH));
+		}
+	}
+
+}
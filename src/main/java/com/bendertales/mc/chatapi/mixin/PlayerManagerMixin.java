@@ -3,6 +3,7 @@ package com.bendertales.mc.chatapi.mixin;
 
 import com.bendertales.mc.chatapi.api.ChatException;
 import com.bendertales.mc.chatapi.impl.ChatManager;
+import com.mojang.authlib.GameProfile;
 import net.minecraft.network.message.MessageType;
 import net.minecraft.network.message.SignedMessage;
 import net.minecraft.server.PlayerManager;
@@ -31,4 +32,14 @@ public class PlayerManagerMixin {
 		ci.cancel();
 	}
 
+	@Inject(method = "addToOperators", at = @At(value = "TAIL"))
+	private void onOperatorAdded(GameProfile profile, CallbackInfo ci) {
+		ChatManager.get().onPermissionsChanged(profile.getId());
+	}
+
+	@Inject(method = "removeFromOperators", at = @At(value = "TAIL"))
+	private void onOperatorRemoved(GameProfile profile, CallbackInfo ci) {
+		ChatManager.get().onPermissionsChanged(profile.getId());
+	}
+
 }